@@ -0,0 +1,183 @@
+package com.api.rest.biblioteca.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.api.rest.biblioteca.ApiRestBibliotecaLibrosBidireccionalApplication;
+
+/*
+ Tiempo desde que se lanza la JVM hasta que la aplicacion responde su primera solicitud (GET /api/libros?size=1),
+ en cada modo de inicio. Cada medicion inicia un proceso nuevo con el jar del proyecto extraido en target/arranque
+ (como en el perfil de Maven cds) y una base H2 en memoria: el jar de H2 se agrega al final del classpath.
+
+ - desarrollo: perfil por defecto, Hibernate crea las tablas con create-drop.
+ - produccion: perfil "produccion", con las migraciones de src/test/resources/db/migration/h2 y validate.
+ - cds: produccion con un archivo de clases compartidas, generado antes de medir con una ejecucion de entrenamiento.
+ - aot, aot-cds: lo mismo con el codigo generado por Spring AOT. Requieren compilar con el perfil aot:
+     ./mvnw -P aot,benchmarks verify -DskipTests -Djmh.args="ArranqueBenchmark"
+
+ La salida de cada proceso queda en target/arranque/<modo>.log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ArranqueBenchmark {
+
+    private static final String INICIALIZADOR_AOT =
+            ApiRestBibliotecaLibrosBidireccionalApplication.class.getName().replace('.', '/') + "__ApplicationContextInitializer.class";
+
+    @Param({"desarrollo", "produccion", "cds", "aot", "aot-cds"})
+    private String modo;
+
+    private final HttpClient cliente = HttpClient.newHttpClient();
+
+    private Path directorio;
+
+    private Path log;
+
+    private List<String> jvm;
+
+    private List<String> aplicacion;
+
+    private ProcessBuilder inicio;
+
+    private URI primeraSolicitud;
+
+    private Process proceso;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        directorio = Path.of("target", "arranque").toAbsolutePath();
+        Path jar = extraer(directorio);
+        log = directorio.resolve(modo + ".log");
+        Files.deleteIfExists(log);
+        if (modo.startsWith("aot")) {
+            try (JarFile contenido = new JarFile(jar.toFile())) {
+                if (contenido.getEntry(INICIALIZADOR_AOT) == null) {
+                    throw new IllegalStateException("El jar no tiene el codigo generado por Spring AOT: compilar con -P aot");
+                }
+            }
+        }
+
+        Path h2 = Path.of(org.h2.Driver.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        jvm = new ArrayList<>(List.of("java", "-cp", jar + File.pathSeparator + h2));
+        if (modo.startsWith("aot")) {
+            jvm.add("-Dspring.aot.enabled=true");
+        }
+
+        aplicacion = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:arranque;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--management.server.port=0"));
+        if (!modo.equals("desarrollo")) {
+            aplicacion.addAll(List.of(
+                    "--spring.profiles.active=produccion",
+                    "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                    "--spring.flyway.locations=filesystem:" + Path.of("src/test/resources/db/migration/h2").toAbsolutePath()));
+        }
+
+        if (modo.endsWith("cds")) {
+            //el archivo se genera con el mismo classpath con el que se usa; la ejecucion termina al levantarse el contexto
+            Path archivo = directorio.resolve(modo + ".jsa");
+            Files.deleteIfExists(archivo);
+            int salida = comando(List.of("-XX:ArchiveClassesAtExit=" + archivo, "-Dspring.context.exit=onRefresh"), "--server.port=0")
+                    .start().waitFor();
+            if (salida != 0 || !Files.exists(archivo)) {
+                throw new IllegalStateException("No se pudo generar " + archivo + " (ver " + log + ")");
+            }
+            jvm.add("-XX:SharedArchiveFile=" + archivo);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void elegirPuerto() throws IOException {
+        int puerto;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            puerto = socket.getLocalPort();
+        }
+        inicio = comando(List.of(), "--server.port=" + puerto);
+        primeraSolicitud = URI.create("http://localhost:" + puerto + "/api/libros?size=1");
+    }
+
+    @Benchmark
+    public int primeraSolicitud() throws Exception {
+        proceso = inicio.start();
+        HttpRequest solicitud = HttpRequest.newBuilder(primeraSolicitud).build();
+        while (true) {
+            if (!proceso.isAlive()) {
+                throw new IllegalStateException("La aplicacion termino al iniciar (ver " + log + ")");
+            }
+            try {
+                int estado = cliente.send(solicitud, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (estado == 200) {
+                    return estado;
+                }
+            } catch (IOException todaviaNoEscucha) {
+                //Tomcat todavia no acepta conexiones
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void detener() throws InterruptedException {
+        proceso.destroy();
+        proceso.waitFor();
+    }
+
+    private ProcessBuilder comando(List<String> opciones, String puerto) {
+        List<String> comando = new ArrayList<>(jvm);
+        comando.addAll(opciones);
+        comando.add(ApiRestBibliotecaLibrosBidireccionalApplication.class.getName());
+        comando.addAll(aplicacion);
+        comando.add(puerto);
+        return new ProcessBuilder(comando).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()));
+    }
+
+    //extrae target/<proyecto>.jar (generado por mvn package) con el mismo formato que el perfil de Maven cds
+    private static Path extraer(Path directorio) throws Exception {
+        Path empaquetado;
+        try (Stream<Path> archivos = Files.list(Path.of("target"))) {
+            empaquetado = archivos.filter(archivo -> archivo.toString().endsWith(".jar")).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No se encontro el jar en target: ejecutar mvn package"));
+        }
+        Process extraccion = new ProcessBuilder("java", "-Djarmode=tools", "-jar", empaquetado.toString(),
+                "extract", "--force", "--destination", directorio.toString()).inheritIO().start();
+        if (extraccion.waitFor() != 0) {
+            throw new IllegalStateException("No se pudo extraer " + empaquetado);
+        }
+        return directorio.resolve(empaquetado.getFileName());
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.api.rest.biblioteca.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.api.rest.biblioteca.dto.LibroResumen;
+import com.api.rest.biblioteca.dto.ResultadoBusqueda;
+import com.api.rest.biblioteca.services.IndiceLibros;
+
+/*
+ Latencia de IndiceLibros con un millon de titulos generados al azar (de 2 a 6 palabras de un vocabulario
+ de 20.000). Mode.SampleTime informa los percentiles (p50, p99, p99.9) de cada busqueda en el JSON.
+
+ - buscar: dos palabras completas.
+ - autocompletar: una palabra completa y el comienzo de otra, como mientras el usuario escribe.
+ - sugerir: palabras que empiezan con dos letras.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BusquedaBenchmark {
+
+    private static final int CONSULTAS = 1024;
+
+    @Param({"1000000"})
+    private int titulos;
+
+    private IndiceLibros indice;
+
+    private String[] busquedas;
+
+    private String[] prefijos;
+
+    private String[] iniciales;
+
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        Random azar = new Random(42);
+        String[] vocabulario = new String[20_000];
+        for (int i = 0; i < vocabulario.length; i++) {
+            vocabulario[i] = palabra(azar);
+        }
+
+        indice = new IndiceLibros();
+        for (long id = 1; id <= titulos; id++) {
+            StringBuilder titulo = new StringBuilder();
+            int palabras = 2 + azar.nextInt(5);
+            for (int j = 0; j < palabras; j++) {
+                titulo.append(j == 0 ? "" : " ").append(vocabulario[azar.nextInt(vocabulario.length)]);
+            }
+            indice.guardar(new LibroResumen(id, titulo.toString(), 1L));
+        }
+
+        busquedas = new String[CONSULTAS];
+        prefijos = new String[CONSULTAS];
+        iniciales = new String[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            String primera = vocabulario[azar.nextInt(vocabulario.length)];
+            String segunda = vocabulario[azar.nextInt(vocabulario.length)];
+            busquedas[i] = primera + " " + segunda + " ";
+            prefijos[i] = primera + " " + segunda.substring(0, 3);
+            iniciales[i] = segunda.substring(0, 2);
+        }
+    }
+
+    @Benchmark
+    public List<ResultadoBusqueda> buscar() {
+        return indice.buscar(busquedas[siguiente++ & (CONSULTAS - 1)], 20);
+    }
+
+    @Benchmark
+    public List<ResultadoBusqueda> autocompletar() {
+        return indice.buscar(prefijos[siguiente++ & (CONSULTAS - 1)], 20);
+    }
+
+    @Benchmark
+    public List<String> sugerir() {
+        return indice.sugerir(iniciales[siguiente++ & (CONSULTAS - 1)], 10);
+    }
+
+    //una palabra de 2 a 4 silabas
+    private static String palabra(Random azar) {
+        String consonantes = "bcdfglmnprstv";
+        String vocales = "aeiou";
+        StringBuilder palabra = new StringBuilder();
+        int silabas = 2 + azar.nextInt(3);
+        for (int i = 0; i < silabas; i++) {
+            palabra.append(consonantes.charAt(azar.nextInt(consonantes.length()))).append(vocales.charAt(azar.nextInt(vocales.length())));
+        }
+        return palabra.toString();
+    }
+
+}
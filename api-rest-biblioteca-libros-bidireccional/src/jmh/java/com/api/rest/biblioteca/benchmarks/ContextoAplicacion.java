@@ -0,0 +1,81 @@
+package com.api.rest.biblioteca.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.api.rest.biblioteca.ApiRestBibliotecaLibrosBidireccionalApplication;
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+/*
+ La aplicacion completa sobre la base H2 en memoria de los tests (src/test/resources/application.properties),
+ con LIBROS libros en una biblioteca. Se levanta una vez por fork y la comparten todos los benchmarks.
+
+ Las estadisticas de Hibernate se apagan para no medirlas.
+ */
+@State(Scope.Benchmark)
+public class ContextoAplicacion {
+
+    public static final int LIBROS = 10_000;
+
+    private ConfigurableApplicationContext contexto;
+
+    private MockMvc mockMvc;
+
+    private Long bibliotecaId;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = SpringApplication.run(ApiRestBibliotecaLibrosBidireccionalApplication.class,
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--spring.jpa.properties.hibernate.generate_statistics=false",
+                "--logging.level.root=WARN");
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) contexto).build();
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        bibliotecaId = getBean(BibliotecaRepository.class).save(biblioteca).getId();
+
+        LibroRepository libroRepository = getBean(LibroRepository.class);
+        List<Libro> libros = new ArrayList<>();
+        for (int i = 0; i < LIBROS; i++) {
+            Libro libro = new Libro();
+            libro.setNombre("Libro " + i);
+            libro.setBiblioteca(biblioteca);
+            libros.add(libro);
+        }
+        libroRepository.saveAll(libros);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    public <T> T getBean(Class<T> tipo) {
+        return contexto.getBean(tipo);
+    }
+
+    public MockMvc getMockMvc() {
+        return mockMvc;
+    }
+
+    public Long getBibliotecaId() {
+        return bibliotecaId;
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.api.rest.biblioteca.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import com.api.rest.biblioteca.dto.BibliotecaResumen;
+import com.api.rest.biblioteca.dto.LibroResumen;
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.hibernate6.Hibernate6Module;
+
+/*
+ Tiempo de conversion de las respuestas a JSON, CBOR y Smile (FormatosBinariosConfig) con paginas de 20, 200 y
+ 2000 libros: la pagina de GET /api/libros (proyecciones), una pagina de entidades Libro y la biblioteca con
+ sus libros de GET /api/biblioteca/{id}.
+
+ El tamano de cada respuesta, sin comprimir y con gzip (server.compression), se escribe en la salida al
+ preparar cada combinacion, en bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatosBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String formato;
+
+    @Param({"20", "200", "2000"})
+    private int libros;
+
+    private ObjectMapper objectMapper;
+
+    private Page<LibroResumen> paginaDeResumenes;
+
+    private Page<Libro> paginaDeLibros;
+
+    private BibliotecaResumen bibliotecaResumen;
+
+    @Setup
+    public void preparar() throws IOException {
+        JsonFactory fabrica = switch (formato) {
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> new JsonFactory();
+        };
+        objectMapper = new ObjectMapper(fabrica).registerModule(new Hibernate6Module());
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setId(1L);
+        biblioteca.setNombre("Central");
+
+        Set<Libro> entidades = new HashSet<>();
+        List<LibroResumen> resumenes = new ArrayList<>();
+        for (long i = 0; i < libros; i++) {
+            Libro libro = new Libro();
+            libro.setId(100_000 + i);
+            libro.setNombre("Libro numero " + i);
+            libro.setVersion(0L);
+            entidades.add(libro);
+            resumenes.add(new LibroResumen(libro.getId(), libro.getNombre(), biblioteca.getId()));
+        }
+        biblioteca.setLibros(entidades);
+
+        PageRequest pagina = PageRequest.of(0, libros);
+        paginaDeResumenes = new PageImpl<>(resumenes, pagina, libros * 10L);
+        paginaDeLibros = new PageImpl<>(new ArrayList<>(entidades), pagina, libros * 10L);
+        bibliotecaResumen = new BibliotecaResumen(biblioteca.getId(), biblioteca.getNombre(), libros).conLibros(resumenes);
+
+        System.out.printf("%n%s, %d libros: paginaDeResumenes %s, paginaDeLibros %s, bibliotecaResumen %s%n", formato, libros,
+                tamanos(paginaDeResumenes()), tamanos(paginaDeLibros()), tamanos(bibliotecaResumen()));
+    }
+
+    @Benchmark
+    public byte[] paginaDeResumenes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(paginaDeResumenes);
+    }
+
+    @Benchmark
+    public byte[] paginaDeLibros() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(paginaDeLibros);
+    }
+
+    @Benchmark
+    public byte[] bibliotecaResumen() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(bibliotecaResumen);
+    }
+
+    //"bytes sin comprimir / bytes con gzip"
+    private static String tamanos(byte[] contenido) throws IOException {
+        ByteArrayOutputStream comprimido = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(comprimido)) {
+            gzip.write(contenido);
+        }
+        return contenido.length + " / " + comprimido.size();
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.api.rest.biblioteca.benchmarks;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ POST /api/libros (guardarLibro) y PUT /api/libros/{id} (actualizarLibro) con MockMvc: incluye la
+ conversion del JSON, la validacion, el controlador y las sentencias SQL contra H2, pero no la red.
+
+ Cada hilo usa su propio prefijo de nombres, porque el nombre de un libro es unico.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LibroControllerBenchmark {
+
+    private static final AtomicInteger HILOS = new AtomicInteger();
+
+    private MockMvc mockMvc;
+
+    private Long bibliotecaId;
+
+    private String prefijo;
+
+    private long guardados;
+
+    private long actualizaciones;
+
+    private String urlLibro;
+
+    @Setup
+    public void preparar(ContextoAplicacion contexto) throws Exception {
+        mockMvc = contexto.getMockMvc();
+        bibliotecaId = contexto.getBibliotecaId();
+        prefijo = "Hilo " + HILOS.incrementAndGet() + " - ";
+
+        String respuesta = mockMvc.perform(post("/api/libros").contentType(MediaType.APPLICATION_JSON).content(libro("Actualizado")))
+                .andReturn().getResponse().getContentAsString();
+        urlLibro = "/api/libros/" + contexto.getBean(ObjectMapper.class).readTree(respuesta).get("id").asLong();
+    }
+
+    @Benchmark
+    public int guardarLibro() throws Exception {
+        return mockMvc.perform(post("/api/libros").contentType(MediaType.APPLICATION_JSON).content(libro("Nuevo " + guardados++)))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int actualizarLibro() throws Exception {
+        return mockMvc.perform(put(urlLibro).contentType(MediaType.APPLICATION_JSON).content(libro("Actualizado " + actualizaciones++)))
+                .andReturn().getResponse().getStatus();
+    }
+
+    private String libro(String nombre) {
+        return "{\"nombre\": \"%s%s\", \"biblioteca\": {\"id\": %d}}".formatted(prefijo, nombre, bibliotecaId);
+    }
+
+}
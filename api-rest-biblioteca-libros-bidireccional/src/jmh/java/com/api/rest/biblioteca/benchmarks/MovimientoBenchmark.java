@@ -0,0 +1,104 @@
+package com.api.rest.biblioteca.benchmarks;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+/*
+ Tiempo para mover "libros" libros de una biblioteca a otra: con una sola solicitud
+ POST /api/biblioteca/{destino}/libros/move (moverEnLote) o con un PUT /api/libros/{id} por libro (unoPorUno),
+ que era la unica forma antes. Cada invocacion mueve los libros a la otra biblioteca, ida y vuelta.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovimientoBenchmark {
+
+    @Param({"100", "1000"})
+    private int libros;
+
+    private MockMvc mockMvc;
+
+    private Long[] bibliotecas;
+
+    private List<Libro> movidos;
+
+    private String cuerpoLote;
+
+    private int destino;
+
+    @Setup
+    public void preparar(ContextoAplicacion contexto) {
+        mockMvc = contexto.getMockMvc();
+        BibliotecaRepository bibliotecaRepository = contexto.getBean(BibliotecaRepository.class);
+
+        Biblioteca origen = bibliotecaRepository.save(biblioteca("Movimiento " + libros + " - origen"));
+        Biblioteca otra = bibliotecaRepository.save(biblioteca("Movimiento " + libros + " - otra"));
+        bibliotecas = new Long[] {origen.getId(), otra.getId()};
+
+        List<Libro> nuevos = new ArrayList<>();
+        for (int i = 0; i < libros; i++) {
+            Libro libro = new Libro();
+            libro.setNombre("Movimiento " + libros + " - libro " + i);
+            libro.setBiblioteca(origen);
+            nuevos.add(libro);
+        }
+        movidos = contexto.getBean(LibroRepository.class).saveAll(nuevos);
+        cuerpoLote = "{\"ids\": " + movidos.stream().map(Libro::getId).toList() + "}";
+    }
+
+    @Benchmark
+    public int moverEnLote() throws Exception {
+        return mockMvc.perform(post("/api/biblioteca/" + siguienteDestino() + "/libros/move").contentType(MediaType.APPLICATION_JSON).content(cuerpoLote))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int unoPorUno() throws Exception {
+        Long hacia = siguienteDestino();
+        int estado = 0;
+        for (Libro libro : movidos) {
+            estado = mockMvc.perform(put("/api/libros/" + libro.getId()).contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"nombre\": \"%s\", \"biblioteca\": {\"id\": %d}}".formatted(libro.getNombre(), hacia)))
+                    .andReturn().getResponse().getStatus();
+        }
+        return estado;
+    }
+
+    private static Biblioteca biblioteca(String nombre) {
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre(nombre);
+        return biblioteca;
+    }
+
+    private Long siguienteDestino() {
+        destino = 1 - destino;
+        return bibliotecas[destino];
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.api.rest.biblioteca.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import com.api.rest.biblioteca.dto.LibroResumen;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+/*
+ Lectura de una pagina de libros (con su COUNT) con distintos tamanos de pagina: como entidades con
+ findAll(Pageable) y como proyecciones con findResumenes, que es lo que usa GET /api/libros.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositorioBenchmark {
+
+    @Param({"20", "100", "1000"})
+    private int tamano;
+
+    private LibroRepository libroRepository;
+
+    private Pageable pagina;
+
+    @Setup
+    public void preparar(ContextoAplicacion contexto) {
+        libroRepository = contexto.getBean(LibroRepository.class);
+        //una pagina del medio, para que el OFFSET no sea 0
+        pagina = PageRequest.of(ContextoAplicacion.LIBROS / tamano / 2, tamano);
+    }
+
+    @Benchmark
+    public Page<Libro> findAll() {
+        return libroRepository.findAll(pagina);
+    }
+
+    @Benchmark
+    public Page<LibroResumen> findResumenes() {
+        return libroRepository.findResumenes(pagina);
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.api.rest.biblioteca.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import com.api.rest.biblioteca.dto.BibliotecaResumen;
+import com.api.rest.biblioteca.dto.LibroResumen;
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.hibernate6.Hibernate6Module;
+
+/*
+ Conversion a JSON de una biblioteca con sus libros y de una pagina de libros, como entidades y como
+ proyecciones, sin base de datos. El ObjectMapper tiene el mismo modulo de Hibernate que la aplicacion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializacionBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int libros;
+
+    private ObjectMapper objectMapper;
+
+    private Biblioteca biblioteca;
+
+    private Page<Libro> paginaDeLibros;
+
+    private BibliotecaResumen bibliotecaResumen;
+
+    private Page<LibroResumen> paginaDeResumenes;
+
+    @Setup
+    public void preparar() {
+        objectMapper = new ObjectMapper().registerModule(new Hibernate6Module());
+
+        biblioteca = new Biblioteca();
+        biblioteca.setId(1L);
+        biblioteca.setNombre("Central");
+
+        Set<Libro> conjunto = new HashSet<>();
+        List<LibroResumen> resumenes = new ArrayList<>();
+        for (long i = 0; i < libros; i++) {
+            Libro libro = new Libro();
+            libro.setId(i);
+            libro.setNombre("Libro " + i);
+            conjunto.add(libro);
+            resumenes.add(new LibroResumen(i, libro.getNombre(), biblioteca.getId()));
+        }
+        biblioteca.setLibros(conjunto);
+
+        PageRequest pagina = PageRequest.of(0, libros);
+        paginaDeLibros = new PageImpl<>(new ArrayList<>(conjunto), pagina, libros * 10L);
+        bibliotecaResumen = new BibliotecaResumen(biblioteca.getId(), biblioteca.getNombre(), libros).conLibros(resumenes);
+        paginaDeResumenes = new PageImpl<>(resumenes, pagina, libros * 10L);
+    }
+
+    @Benchmark
+    public byte[] bibliotecaConLibros() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(biblioteca);
+    }
+
+    @Benchmark
+    public byte[] paginaDeLibros() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(paginaDeLibros);
+    }
+
+    @Benchmark
+    public byte[] bibliotecaResumen() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(bibliotecaResumen);
+    }
+
+    @Benchmark
+    public byte[] paginaDeResumenes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(paginaDeResumenes);
+    }
+
+}
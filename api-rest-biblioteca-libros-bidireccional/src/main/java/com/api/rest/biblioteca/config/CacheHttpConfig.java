@@ -0,0 +1,26 @@
+package com.api.rest.biblioteca.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+
+/*
+ Encabezado Cache-Control de las respuestas con ETag (GET /api/libros/{id} y GET /api/biblioteca/{id}).
+
+ Con biblioteca.cache-http.max-age=0 (el valor por defecto) se envia "no-cache": el cliente puede guardar la
+ respuesta, pero debe preguntar antes de usarla enviando el ETag en If-None-Match, y recibe 304 (Not Modified)
+ si no cambio. Con un valor mayor el cliente la usa sin preguntar durante ese tiempo (max-age), y despues
+ debe volver a validarla (must-revalidate).
+ */
+@Configuration
+public class CacheHttpConfig {
+
+    @Bean
+    public CacheControl cacheControl(@Value("${biblioteca.cache-http.max-age:0s}") Duration maxAge) {
+        return maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge).mustRevalidate();
+    }
+
+}
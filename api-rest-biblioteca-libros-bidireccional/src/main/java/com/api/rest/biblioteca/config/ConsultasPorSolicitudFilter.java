@@ -0,0 +1,50 @@
+package com.api.rest.biblioteca.config;
+
+import java.io.IOException;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ Cuenta las sentencias SQL de cada solicitud y las registra en biblioteca.solicitudes.consultas, con el
+ metodo y el patron de la URI del endpoint (por ejemplo GET /api/biblioteca/{id}), igual que el timer
+ http.server.requests. Un endpoint cuyo numero de consultas crece con los datos es un problema N+1.
+
+ Las consultas que se hacen en otro hilo (por ejemplo en una exportacion asincrona) no se cuentan.
+ */
+public class ConsultasPorSolicitudFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry registro;
+
+    public ConsultasPorSolicitudFilter(MeterRegistry registro) {
+        this.registro = registro;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RegistroConsultas.iniciarConteo();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            int consultas = RegistroConsultas.terminarConteo();
+            Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (patron != null) {
+                DistributionSummary.builder("biblioteca.solicitudes.consultas")
+                        .description("Sentencias SQL por solicitud HTTP")
+                        .tag("method", request.getMethod())
+                        .tag("uri", patron.toString())
+                        .register(registro)
+                        .record(consultas);
+            }
+        }
+    }
+
+}
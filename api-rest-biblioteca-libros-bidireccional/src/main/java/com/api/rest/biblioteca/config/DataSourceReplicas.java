@@ -0,0 +1,207 @@
+package com.api.rest.biblioteca.config;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/*
+ DataSource con una base principal y replicas de lectura.
+
+ Las conexiones se piden recien al ejecutar la primera sentencia (LazyConnectionDataSourceProxy). Para entonces
+ Spring ya marco la conexion como de solo lectura si la transaccion es @Transactional(readOnly = true), y en ese
+ caso se toma de una replica; todo lo demas (escrituras, Flyway, Hibernate al iniciar) usa la principal.
+
+ Las replicas se usan por turnos. Si una no entrega una conexion, se deja de usar durante "reintento" y despues
+ se vuelve a probar con la siguiente lectura que le toque. Si no queda ninguna, se lee de la principal. Las
+ lecturas de una solicitud con LecturaPropiaFilter.activa() tambien van a la principal.
+
+ Ademas, cada "intervalo" (Verificacion) un hilo propio pide una conexion a cada replica y, si hay una consulta
+ de retraso, la ejecuta: una replica que no responde, con la replicacion detenida o mas atrasada que
+ retrasoMaximo sale de la rotacion hasta que una verificacion posterior la encuentre bien. Asi una replica
+ atrasada se deja de usar aunque siga entregando conexiones.
+ */
+public class DataSourceReplicas extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourceReplicas.class);
+
+    private final DataSource primaria;
+
+    private final List<Replica> replicas;
+
+    private final Duration reintento;
+
+    private final Verificacion verificacion;
+
+    private final AtomicInteger turno = new AtomicInteger();
+
+    private final ScheduledExecutorService verificador;
+
+    public DataSourceReplicas(DataSource primaria, List<DataSource> replicas, Duration reintento, Verificacion verificacion) {
+        super(primaria);
+        this.primaria = primaria;
+        this.replicas = replicas.stream().map(dataSource -> new Replica(dataSource, System.nanoTime())).toList();
+        this.reintento = reintento;
+        this.verificacion = verificacion;
+        setReadOnlyDataSource(new Lecturas());
+
+        if (verificacion.intervalo().isZero()) {
+            verificador = null;
+        } else {
+            verificador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+                Thread hilo = new Thread(tarea, "replicas-verificacion");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            verificador.scheduleWithFixedDelay(this::verificar, 0, verificacion.intervalo().toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (verificador != null) {
+            verificador.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            cerrar(replica.dataSource);
+        }
+        cerrar(primaria);
+    }
+
+    private Connection conexionDeLectura() throws SQLException {
+        if (LecturaPropiaFilter.activa()) {
+            return primaria.getConnection();
+        }
+
+        int primera = Math.floorMod(turno.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            int numero = (primera + i) % replicas.size();
+            Replica replica = replicas.get(numero);
+            if (!replica.verificada || System.nanoTime() - replica.disponibleDesde < 0) {
+                continue;
+            }
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.disponibleDesde = System.nanoTime() + reintento.toNanos();
+                log.warn("Replica {} sin conexion, se deja de usar durante {}: {}", numero + 1, reintento, e.getMessage());
+            }
+        }
+        return primaria.getConnection();
+    }
+
+    //saca de la rotacion las replicas con problemas y vuelve a agregar las que se recuperaron
+    void verificar() {
+        for (int numero = 0; numero < replicas.size(); numero++) {
+            Replica replica = replicas.get(numero);
+            String problema = problema(replica);
+            if (problema != null && replica.verificada) {
+                log.warn("Replica {} fuera de uso: {}", numero + 1, problema);
+            } else if (problema == null && !replica.verificada) {
+                log.info("Replica {} otra vez en uso", numero + 1);
+            }
+            replica.verificada = problema == null;
+        }
+    }
+
+    //null si la replica entrega conexiones y no esta mas atrasada que retrasoMaximo
+    private String problema(Replica replica) {
+        try (Connection conexion = replica.dataSource.getConnection()) {
+            if (verificacion.consultaRetraso() == null) {
+                return null;
+            }
+            try (Statement sentencia = conexion.createStatement();
+                    ResultSet resultado = sentencia.executeQuery(verificacion.consultaRetraso())) {
+                if (!resultado.next()) {
+                    return "la consulta de retraso no devolvio filas";
+                }
+                long segundos = segundosDeRetraso(resultado);
+                if (resultado.wasNull()) {
+                    return "la replicacion esta detenida";
+                }
+                if (segundos > verificacion.retrasoMaximo().toSeconds()) {
+                    return "atrasada " + segundos + " s";
+                }
+                return null;
+            }
+        } catch (SQLException e) {
+            return e.getMessage();
+        }
+    }
+
+    //la columna Seconds_Behind_Source si la consulta es SHOW REPLICA STATUS (MySQL), si no la primera
+    private static long segundosDeRetraso(ResultSet resultado) throws SQLException {
+        ResultSetMetaData columnas = resultado.getMetaData();
+        for (int columna = 1; columna <= columnas.getColumnCount(); columna++) {
+            if ("Seconds_Behind_Source".equalsIgnoreCase(columnas.getColumnLabel(columna))) {
+                return resultado.getLong(columna);
+            }
+        }
+        return resultado.getLong(1);
+    }
+
+    private static void cerrar(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable cerrable) {
+            try {
+                cerrable.close();
+            } catch (Exception e) {
+                log.warn("No se pudo cerrar el pool de conexiones", e);
+            }
+        }
+    }
+
+    private static final class Replica {
+
+        private final DataSource dataSource;
+
+        //System.nanoTime() a partir del cual se vuelve a usar, despues de un fallo
+        private volatile long disponibleDesde;
+
+        //false si la ultima verificacion periodica encontro un problema
+        private volatile boolean verificada = true;
+
+        private Replica(DataSource dataSource, long disponibleDesde) {
+            this.dataSource = dataSource;
+            this.disponibleDesde = disponibleDesde;
+        }
+
+    }
+
+    /*
+     Verificacion periodica de las replicas: cada "intervalo" (cero para no verificar) y, si consultaRetraso no es
+     null, con esa consulta, que devuelve el retraso en segundos (null si la replicacion esta detenida).
+     */
+    public record Verificacion(Duration intervalo, String consultaRetraso, Duration retrasoMaximo) {
+    }
+
+    //las conexiones de solo lectura
+    private final class Lecturas extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return conexionDeLectura();
+        }
+
+        @Override
+        public Connection getConnection(String usuario, String clave) throws SQLException {
+            return conexionDeLectura();
+        }
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.api.rest.biblioteca.config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/*
+ Informa cuando un hilo virtual queda fijado (pinned) a su hilo de plataforma mas de un umbral.
+
+ Un hilo virtual que se bloquea dentro de un bloque synchronized (en Java 21) no libera su hilo de
+ plataforma: si eso pasa en el driver JDBC o en el pool mientras se espera a la base, los hilos
+ virtuales dejan de escalar. La JVM registra esos casos con el evento de JFR jdk.VirtualThreadPinned;
+ este componente lo escucha en el mismo proceso y escribe en el log la pila donde ocurrio.
+
+ Equivale a -Djdk.tracePinnedThreads=short, pero con un umbral y sin tener que reiniciar la JVM con
+ otra opcion. En Java 17 el evento no existe y el componente no informa nada.
+ */
+public class DiagnosticoFijacion implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DiagnosticoFijacion.class);
+
+    private static final int MARCOS = 8;
+
+    private final RecordingStream grabacion = new RecordingStream();
+
+    private final AtomicLong fijaciones = new AtomicLong();
+
+    public DiagnosticoFijacion(Duration umbral) {
+        grabacion.enable("jdk.VirtualThreadPinned").withThreshold(umbral).withStackTrace();
+        grabacion.onEvent("jdk.VirtualThreadPinned", this::informar);
+        grabacion.startAsync();
+    }
+
+    private void informar(RecordedEvent evento) {
+        fijaciones.incrementAndGet();
+        log.warn("Hilo virtual fijado {} ms en:\n{}", evento.getDuration().toMillis(), pila(evento));
+    }
+
+    private static String pila(RecordedEvent evento) {
+        if (evento.getStackTrace() == null) {
+            return "\t(sin pila)";
+        }
+        List<RecordedFrame> marcos = evento.getStackTrace().getFrames();
+        return marcos.stream()
+                .limit(MARCOS)
+                .map(marco -> "\tat " + marco.getMethod().getType().getName() + "." + marco.getMethod().getName() + ":" + marco.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+
+    //cantidad de fijaciones informadas desde que arranco la aplicacion
+    public long getFijaciones() {
+        return fijaciones.get();
+    }
+
+    @Override
+    public void close() {
+        grabacion.close();
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.api.rest.biblioteca.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/*
+ Hilos que ejecutan las solicitudes y las tareas en segundo plano.
+
+ Por defecto Tomcat atiende cada solicitud con un hilo de su pool (200 hilos de plataforma). Con
+ spring.threads.virtual.enabled=true (perfil "virtual", requiere Java 21) Spring Boot hace que Tomcat
+ use un hilo virtual por solicitud, y que el ejecutor applicationTaskExecutor tambien cree hilos
+ virtuales. Ese ejecutor es el que usan los metodos @Async y las respuestas asincronas de Spring MVC
+ (por ejemplo las exportaciones con StreamingResponseBody), asi que todo cambia con una sola propiedad.
+
+ Con hilos virtuales el limite de concurrencia contra la base pasa a ser el pool de conexiones de
+ Hikari, que se configura en application-virtual.properties.
+ */
+@Configuration
+@EnableAsync
+public class EjecucionConfig {
+
+    @Bean
+    @ConditionalOnProperty("spring.threads.virtual.enabled")
+    public DiagnosticoFijacion diagnosticoFijacion(@Value("${biblioteca.hilos-virtuales.umbral-fijacion:20ms}") Duration umbral) {
+        return new DiagnosticoFijacion(umbral);
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.api.rest.biblioteca.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/*
+ Formatos binarios para los clientes internos, ademas de JSON. Los endpoints son los mismos: el formato se
+ elige con el encabezado Accept (y Content-Type para los cuerpos que se envian).
+ - application/cbor: CBOR (RFC 8949)
+ - application/x-jackson-smile: Smile, el formato binario de Jackson
+ Los dos representan los mismos objetos que el JSON, pero sin comillas ni separadores y con los numeros en
+ binario, asi que ocupan menos y se escriben y leen mas rapido. Smile ademas escribe una sola vez cada
+ nombre de campo repetido (por ejemplo en una pagina de libros).
+
+ Los ObjectMapper se arman con el Jackson2ObjectMapperBuilder de Spring Boot, asi tienen la misma
+ configuracion que el de JSON (incluido el modulo de Hibernate de JacksonConfig). Spring Boot agrega estos
+ conversores a los de Spring MVC porque son beans de tipo HttpMessageConverter.
+ */
+@Configuration
+public class FormatosBinariosConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false).factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.createXmlMapper(false).factory(new SmileFactory()).build());
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.api.rest.biblioteca.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.datatype.hibernate6.Hibernate6Module;
+
+/*
+ Registra el modulo de Jackson para Hibernate. Spring Boot agrega automaticamente al ObjectMapper
+ todos los beans de tipo Module.
+
+ Con este modulo, al convertir una entidad a JSON las relaciones LAZY que no se cargaron se escriben
+ como null en lugar de disparar una consulta por cada entidad (el problema N+1). Los endpoints que
+ necesitan una relacion la cargan explicitamente en el repositorio (por ejemplo con @EntityGraph).
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public Hibernate6Module hibernate6Module() {
+        return new Hibernate6Module();
+    }
+
+}
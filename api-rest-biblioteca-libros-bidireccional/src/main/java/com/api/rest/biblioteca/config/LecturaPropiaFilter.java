@@ -0,0 +1,67 @@
+package com.api.rest.biblioteca.config;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ Lectura de las propias escrituras con replicas (DataSourceReplicas): las replicas pueden estar algo atrasadas,
+ asi que despues de escribir un cliente tiene que leer de la base principal para ver sus cambios.
+
+ Las solicitudes que escriben (todo lo que no es GET, HEAD u OPTIONS) usan la principal tambien para sus lecturas
+ y dejan en el cliente la cookie biblioteca-primaria por el tiempo "ventana". Mientras el cliente la envie, sus
+ lecturas van a la principal.
+
+ Las lecturas que se hacen en otro hilo (por ejemplo en una exportacion asincrona) usan una replica.
+ */
+public class LecturaPropiaFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "biblioteca-primaria";
+
+    private static final ThreadLocal<Boolean> PRIMARIA = new ThreadLocal<>();
+
+    private final Duration ventana;
+
+    public LecturaPropiaFilter(Duration ventana) {
+        this.ventana = ventana;
+    }
+
+    //true si las lecturas de la solicitud actual tienen que ir a la base principal
+    public static boolean activa() {
+        return PRIMARIA.get() != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean escritura = !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())
+                && !HttpMethod.OPTIONS.matches(request.getMethod());
+
+        if (escritura) {
+            //antes de la solicitud: despues la respuesta puede estar enviada y ya no se pueden agregar cookies
+            response.addHeader("Set-Cookie", ResponseCookie.from(COOKIE, "1").path("/").maxAge(ventana).httpOnly(true).build().toString());
+        }
+
+        if (!escritura && WebUtils.getCookie(request, COOKIE) == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        PRIMARIA.set(Boolean.TRUE);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            PRIMARIA.remove();
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.api.rest.biblioteca.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ Limite de solicitudes simultaneas de un grupo de endpoints, que se ajusta solo segun la latencia (AIMD: aumento
+ aditivo, disminucion multiplicativa):
+ - si una solicitud tarda mas que latenciaObjetivo, el limite baja un 10%, hasta minimo;
+ - si tarda menos y el grupo estaba usando al menos la mitad del limite, el limite sube en 1, hasta maximo.
+ Asi el limite busca la concurrencia con la que la base y el pool de conexiones todavia responden a tiempo. Con
+ minimo = maximo el limite es fijo.
+
+ Publica el limite actual (biblioteca.concurrencia.limite), las solicitudes en curso (biblioteca.concurrencia.activas)
+ y las rechazadas (biblioteca.concurrencia.rechazadas), con el nombre del grupo.
+ */
+public class LimiteConcurrencia {
+
+    private static final double REDUCCION = 0.9;
+
+    public record Configuracion(@DefaultValue("10") int inicial, @DefaultValue("1") int minimo, @DefaultValue("50") int maximo,
+            @DefaultValue("500ms") Duration latenciaObjetivo) {
+    }
+
+    private final Configuracion configuracion;
+
+    private final Counter rechazadas;
+
+    private double limite;
+
+    private int activas;
+
+    public LimiteConcurrencia(String grupo, Configuracion configuracion, MeterRegistry registro) {
+        this.configuracion = configuracion;
+        this.limite = Math.min(Math.max(configuracion.inicial(), configuracion.minimo()), configuracion.maximo());
+        Gauge.builder("biblioteca.concurrencia.limite", this, LimiteConcurrencia::limite)
+                .description("Solicitudes simultaneas permitidas en el grupo de endpoints")
+                .tag("grupo", grupo)
+                .register(registro);
+        Gauge.builder("biblioteca.concurrencia.activas", this, LimiteConcurrencia::activas)
+                .description("Solicitudes en curso en el grupo de endpoints")
+                .tag("grupo", grupo)
+                .register(registro);
+        this.rechazadas = Counter.builder("biblioteca.concurrencia.rechazadas")
+                .description("Solicitudes rechazadas por superar el limite del grupo")
+                .tag("grupo", grupo)
+                .register(registro);
+    }
+
+    //true si la solicitud entra en el limite; en ese caso, al terminar hay que llamar a terminar
+    public boolean intentar() {
+        synchronized (this) {
+            if (activas < (int) limite) {
+                activas++;
+                return true;
+            }
+        }
+        rechazadas.increment();
+        return false;
+    }
+
+    public synchronized void terminar(Duration duracion) {
+        if (duracion.compareTo(configuracion.latenciaObjetivo()) > 0) {
+            limite = Math.max(configuracion.minimo(), limite * REDUCCION);
+        } else if (activas * 2 >= limite) {
+            limite = Math.min(configuracion.maximo(), limite + 1);
+        }
+        activas--;
+    }
+
+    public synchronized int limite() {
+        return (int) limite;
+    }
+
+    public synchronized int activas() {
+        return activas;
+    }
+
+    public int maximo() {
+        return configuracion.maximo();
+    }
+
+}
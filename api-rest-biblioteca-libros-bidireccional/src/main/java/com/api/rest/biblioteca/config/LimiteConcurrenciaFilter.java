@@ -0,0 +1,122 @@
+package com.api.rest.biblioteca.config;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ Compartimentos ("bulkheads") por grupo de endpoints: cada grupo tiene su LimiteConcurrencia, asi una rafaga de
+ listados grandes o de escrituras llena el limite de su grupo y no los hilos de Tomcat ni las conexiones del pool
+ que necesitan las consultas por id. Las solicitudes que no entran se responden enseguida con HTTP 503 (Service
+ Unavailable) y Retry-After, sin llegar al controlador.
+
+ Cada solicitud cuenta en el primer grupo que coincide con su metodo y su ruta; las que no coinciden con ninguno
+ no se limitan. Una solicitud asincrona (por ejemplo una exportacion con StreamingResponseBody) devuelve su lugar
+ cuando termina la respuesta, y no cuando el hilo de Tomcat sale del controlador: mientras se escribe la
+ respuesta sigue ocupando una conexion del pool. El despacho asincrono con el que termina no pasa por el filtro
+ (OncePerRequestFilter no filtra los despachos asincronos), asi que no cuenta dos veces.
+ */
+public class LimiteConcurrenciaFilter extends OncePerRequestFilter {
+
+    public record Grupo(LimiteConcurrencia limite, Set<String> metodos, List<PathPattern> rutas) {
+
+        public static Grupo de(LimiteConcurrencia limite, Set<String> metodos, String... rutas) {
+            return new Grupo(limite, metodos, Arrays.stream(rutas).map(PathPatternParser.defaultInstance::parse).toList());
+        }
+
+        private boolean coincide(String metodo, PathContainer ruta) {
+            return metodos.contains(metodo) && rutas.stream().anyMatch(patron -> patron.matches(ruta));
+        }
+
+    }
+
+    private final List<Grupo> grupos;
+
+    private final String reintentarEn;
+
+    public LimiteConcurrenciaFilter(List<Grupo> grupos, Duration reintentarEn) {
+        this.grupos = grupos;
+        this.reintentarEn = String.valueOf(Math.max(1, reintentarEn.toSeconds()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        LimiteConcurrencia limite = limiteDe(request);
+        if (limite == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (!limite.intentar()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, reintentarEn);
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        boolean asincrona = false;
+        try {
+            chain.doFilter(request, response);
+            asincrona = request.isAsyncStarted();
+        } finally {
+            if (asincrona) {
+                request.getAsyncContext().addListener(new Terminar(limite, inicio));
+            } else {
+                limite.terminar(Duration.ofNanos(System.nanoTime() - inicio));
+            }
+        }
+    }
+
+    /*
+     Devuelve el lugar de una solicitud asincrona. El contenedor llama a onComplete siempre, tambien despues de un
+     error o de que venza el tiempo (en ese caso, cuando termina el despacho que responde el error).
+     */
+    private record Terminar(LimiteConcurrencia limite, long inicio) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent evento) {
+            limite.terminar(Duration.ofNanos(System.nanoTime() - inicio));
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent evento) {
+        }
+
+        @Override
+        public void onError(AsyncEvent evento) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent evento) {
+        }
+
+    }
+
+    private LimiteConcurrencia limiteDe(HttpServletRequest request) {
+        PathContainer ruta = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        for (Grupo grupo : grupos) {
+            if (grupo.coincide(request.getMethod(), ruta)) {
+                return grupo.limite();
+            }
+        }
+        return null;
+    }
+
+}
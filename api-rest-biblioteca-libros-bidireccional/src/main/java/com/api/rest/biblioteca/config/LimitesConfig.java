@@ -0,0 +1,79 @@
+package com.api.rest.biblioteca.config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.api.rest.biblioteca.config.LimiteConcurrenciaFilter.Grupo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ Limites de concurrencia por grupo de endpoints (LimiteConcurrenciaFilter). Cada grupo se configura con
+ biblioteca.limites.<grupo>.inicial, minimo, maximo y latencia-objetivo:
+ - exportaciones: las exportaciones del catalogo, que ocupan su lugar (y una conexion) hasta terminar de escribir
+   la respuesta, aunque no ocupen un hilo de Tomcat;
+ - masivas: la carga masiva de libros y el movimiento de libros en lote;
+ - listados: las paginas de libros y de bibliotecas (con sus libros) y las estadisticas generales;
+ - escrituras: las demas altas, modificaciones y bajas;
+ - consultas: los demas GET (por id, busqueda, estadisticas de una biblioteca).
+
+ Cada solicitud ocupa a lo sumo una conexion del pool (spring.datasource.hikari.maximum-pool-size), y cada
+ eliminacion en segundo plano otra (biblioteca.eliminacion.concurrentes, ver EliminacionBibliotecaService). Para que
+ las solicitudes costosas no dejen sin conexiones a las consultas, los maximos de exportaciones, masivas, listados
+ y escrituras mas las eliminaciones en segundo plano no pueden sumar mas que el pool menos
+ biblioteca.limites.conexiones-consultas; si suman mas, la aplicacion no inicia. El maximo de las consultas puede
+ superar al pool: las que no consiguen conexion esperan en el pool, pero no detras de las costosas.
+
+ Con biblioteca.limites.habilitados=false no se limita ninguna solicitud.
+ */
+@Configuration
+@ConditionalOnProperty(name = "biblioteca.limites.habilitados", matchIfMissing = true)
+public class LimitesConfig {
+
+    private static final Set<String> ESCRITURAS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    private static final Set<String> LECTURAS = Set.of("GET", "HEAD");
+
+    @Bean
+    public LimiteConcurrenciaFilter limiteConcurrenciaFilter(Environment entorno, MeterRegistry registro,
+            @Value("${biblioteca.limites.reintentar-en:1s}") Duration reintentarEn,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int conexiones,
+            @Value("${biblioteca.limites.conexiones-consultas:4}") int conexionesConsultas,
+            @Value("${biblioteca.eliminacion.concurrentes:1}") int eliminaciones) {
+        LimiteConcurrencia exportaciones = limite("exportaciones", entorno, registro);
+        LimiteConcurrencia masivas = limite("masivas", entorno, registro);
+        LimiteConcurrencia listados = limite("listados", entorno, registro);
+        LimiteConcurrencia escrituras = limite("escrituras", entorno, registro);
+        int costosas = exportaciones.maximo() + masivas.maximo() + listados.maximo() + escrituras.maximo() + eliminaciones;
+        if (costosas > conexiones - conexionesConsultas) {
+            throw new IllegalStateException(("Los maximos de biblioteca.limites.exportaciones, masivas, listados y escrituras, mas "
+                    + "biblioteca.eliminacion.concurrentes, suman %d conexiones, pero el pool tiene %d y se reservan %d para las "
+                    + "consultas (biblioteca.limites.conexiones-consultas)")
+                    .formatted(costosas, conexiones, conexionesConsultas));
+        }
+
+        return new LimiteConcurrenciaFilter(List.of(
+                Grupo.de(exportaciones, LECTURAS, "/api/libros/export", "/api/biblioteca/{id}/libros/export"),
+                Grupo.de(masivas, Set.of("POST"), "/api/libros/batch", "/api/biblioteca/{destino}/libros/move"),
+                Grupo.de(listados, LECTURAS, "/api/libros", "/api/biblioteca", "/api/biblioteca/stats"),
+                Grupo.de(escrituras, ESCRITURAS, "/api/**"),
+                Grupo.de(limite("consultas", entorno, registro), LECTURAS, "/api/libros/{id}", "/api/libros/search/**",
+                        "/api/biblioteca/{id}", "/api/biblioteca/{id}/stats", "/api/biblioteca/eliminaciones/{id}")),
+                reintentarEn);
+    }
+
+    private static LimiteConcurrencia limite(String grupo, Environment entorno, MeterRegistry registro) {
+        LimiteConcurrencia.Configuracion configuracion = Binder.get(entorno)
+                .bindOrCreate("biblioteca.limites." + grupo, LimiteConcurrencia.Configuracion.class);
+        return new LimiteConcurrencia(grupo, configuracion, registro);
+    }
+
+}
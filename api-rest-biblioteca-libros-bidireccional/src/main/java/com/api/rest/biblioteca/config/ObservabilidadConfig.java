@@ -0,0 +1,55 @@
+package com.api.rest.biblioteca.config;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+/*
+ Metricas propias de la aplicacion. Las de Spring Boot (http.server.requests por endpoint, hikaricp.* del
+ pool de conexiones y hibernate.* de las estadisticas de Hibernate) se configuran en application.properties.
+
+ El DataSource se envuelve con datasource-proxy para que RegistroConsultas vea cada sentencia SQL con su
+ duracion. El pool (Hikari) sigue siendo el DataSource real, y sus metricas no cambian.
+ */
+@Configuration
+public class ObservabilidadConfig {
+
+    @Bean
+    public RegistroConsultas registroConsultas(MeterRegistry registro,
+            @Value("${biblioteca.consultas-lentas.umbral:200ms}") Duration umbral,
+            @Value("${biblioteca.consultas-lentas.muestreo:1.0}") double muestreo) {
+        return new RegistroConsultas(registro, umbral, muestreo);
+    }
+
+    @Bean
+    public ConsultasPorSolicitudFilter consultasPorSolicitudFilter(MeterRegistry registro) {
+        return new ConsultasPorSolicitudFilter(registro);
+    }
+
+    //static: los BeanPostProcessor se crean antes que el resto de los beans
+    @Bean
+    public static BeanPostProcessor registrarConsultasDelDataSource(ObjectProvider<RegistroConsultas> registroConsultas) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String nombre) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(nombre, dataSource)
+                            .listener(registroConsultas.getObject())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.api.rest.biblioteca.config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+/*
+ Recibe cada sentencia SQL que se ejecuta contra el DataSource (a traves de datasource-proxy) y:
+
+ - registra su duracion en el timer biblioteca.jdbc.consultas;
+ - si tardo umbral o mas, cuenta una consulta lenta (biblioteca.jdbc.consultas.lentas) y la escribe en el
+   log "biblioteca.consultas-lentas". Con muestreo menor a 1 solo se escribe esa fraccion de las consultas
+   lentas, para no llenar el log cuando la base esta lenta; el contador las cuenta todas;
+ - suma una consulta a la solicitud HTTP en curso, si hay una (ver ConsultasPorSolicitudFilter).
+
+ Reemplaza a spring.jpa.show-sql, que escribia todas las sentencias en la salida estandar.
+ */
+public class RegistroConsultas implements QueryExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger("biblioteca.consultas-lentas");
+
+    //consultas de la solicitud que atiende el hilo actual, o null si el hilo no esta atendiendo una
+    private static final ThreadLocal<int[]> CONSULTAS_SOLICITUD = new ThreadLocal<>();
+
+    private final long umbralMs;
+
+    private final double muestreo;
+
+    private final Timer tiempo;
+
+    private final Counter lentas;
+
+    public RegistroConsultas(MeterRegistry registro, Duration umbral, double muestreo) {
+        this.umbralMs = umbral.toMillis();
+        this.muestreo = muestreo;
+        this.tiempo = Timer.builder("biblioteca.jdbc.consultas")
+                .description("Duracion de las sentencias SQL")
+                .register(registro);
+        this.lentas = Counter.builder("biblioteca.jdbc.consultas.lentas")
+                .description("Sentencias SQL que tardaron mas que biblioteca.consultas-lentas.umbral")
+                .register(registro);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo ejecucion, List<QueryInfo> consultas) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo ejecucion, List<QueryInfo> consultas) {
+        int[] contador = CONSULTAS_SOLICITUD.get();
+        if (contador != null) {
+            contador[0]++;
+        }
+
+        long duracion = ejecucion.getElapsedTime();
+        tiempo.record(duracion, TimeUnit.MILLISECONDS);
+
+        if (duracion >= umbralMs) {
+            lentas.increment();
+            if (muestreo >= 1 || ThreadLocalRandom.current().nextDouble() < muestreo) {
+                log.warn("Consulta lenta ({} ms{}): {}", duracion, ejecucion.isBatch() ? ", lote de " + ejecucion.getBatchSize() : "",
+                        consultas.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; ")));
+            }
+        }
+    }
+
+    //empieza a contar las consultas del hilo actual
+    static void iniciarConteo() {
+        CONSULTAS_SOLICITUD.set(new int[1]);
+    }
+
+    //deja de contar y devuelve cuantas consultas hizo el hilo desde iniciarConteo
+    static int terminarConteo() {
+        int[] contador = CONSULTAS_SOLICITUD.get();
+        CONSULTAS_SOLICITUD.remove();
+        return contador == null ? 0 : contador[0];
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.api.rest.biblioteca.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.util.StringUtils;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.persistence.EntityManager;
+
+/*
+ Replicas de lectura (biblioteca.replicas.urls, separadas por comas). Sin esa propiedad la aplicacion usa el
+ DataSource de Spring Boot, con una sola base.
+
+ Con replicas, el DataSource de la aplicacion es un DataSourceReplicas: el pool de la base principal se arma
+ como lo haria Spring Boot (spring.datasource.* y spring.datasource.hikari.*) y cada replica tiene un pool con
+ la misma configuracion y otra url. Los pools de las replicas no esperan mas de espera-conexion por una
+ conexion, para pasar rapido a otra replica si una no responde, y publican sus metricas (hikaricp.*) con el
+ nombre replica-N. Cada "verificacion" se comprueba que respondan y, con consulta-retraso, que no esten mas
+ atrasadas que retraso-maximo (DataSourceReplicas.Verificacion).
+
+ Con el perfil "cache", lo que hay en la cache de segundo nivel y en la cache de consultas puede haberse leido de
+ una replica atrasada. Por eso las transacciones de las solicitudes con LecturaPropiaFilter.activa() no leen de
+ las caches (CacheMode.REFRESH): leen de la principal y dejan lo leido en la cache, en lugar del dato viejo.
+ */
+@Configuration
+@ConditionalOnProperty("biblioteca.replicas.urls")
+public class ReplicasConfig {
+
+    @Bean
+    public DataSourceReplicas dataSource(DataSourceProperties propiedades, Environment entorno, MeterRegistry registro,
+            @Value("${biblioteca.replicas.urls}") String[] urls,
+            @Value("${biblioteca.replicas.espera-conexion:1s}") Duration esperaConexion,
+            @Value("${biblioteca.replicas.reintento:30s}") Duration reintento,
+            @Value("${biblioteca.replicas.verificacion:5s}") Duration intervalo,
+            @Value("${biblioteca.replicas.consulta-retraso:}") String consultaRetraso,
+            @Value("${biblioteca.replicas.retraso-maximo:10s}") Duration retrasoMaximo) {
+        HikariDataSource primaria = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(entorno).bind("spring.datasource.hikari", Bindable.ofInstance(primaria));
+        if (!StringUtils.hasText(primaria.getPoolName())) {
+            primaria.setPoolName("primaria");
+        }
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource();
+            primaria.copyStateTo(replica);
+            replica.setJdbcUrl(url.trim());
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setReadOnly(true);
+            replica.setConnectionTimeout(esperaConexion.toMillis());
+            //la aplicacion inicia aunque una replica no este disponible
+            replica.setInitializationFailTimeout(-1);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registro));
+            replicas.add(replica);
+        }
+
+        return new DataSourceReplicas(primaria, replicas, reintento,
+                new DataSourceReplicas.Verificacion(intervalo, StringUtils.hasText(consultaRetraso) ? consultaRetraso : null, retrasoMaximo));
+    }
+
+    //reemplaza al de Spring Boot (JpaBaseConfiguration), con los mismos TransactionManagerCustomizers
+    @Bean
+    public JpaTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> personalizaciones) {
+        JpaTransactionManager transactionManager = new JpaTransactionManager() {
+            @Override
+            protected EntityManager createEntityManagerForTransaction() {
+                EntityManager entityManager = super.createEntityManagerForTransaction();
+                if (LecturaPropiaFilter.activa()) {
+                    entityManager.unwrap(Session.class).setCacheMode(CacheMode.REFRESH);
+                }
+                return entityManager;
+            }
+        };
+        personalizaciones.ifAvailable(personalizacion -> personalizacion.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Bean
+    public LecturaPropiaFilter lecturaPropiaFilter(@Value("${biblioteca.replicas.lectura-propia:5s}") Duration ventana) {
+        return new LecturaPropiaFilter(ventana);
+    }
+
+}
@@ -1,27 +1,62 @@
 package com.api.rest.biblioteca.controllers;
 
 import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.api.rest.biblioteca.dto.BibliotecaResumen;
+import com.api.rest.biblioteca.dto.EliminacionBiblioteca;
+import com.api.rest.biblioteca.dto.EstadisticasBiblioteca;
+import com.api.rest.biblioteca.dto.EstadisticasBibliotecas;
+import com.api.rest.biblioteca.dto.LibroResumen;
+import com.api.rest.biblioteca.dto.MovimientoLibros;
+import com.api.rest.biblioteca.dto.PaginaCursor;
+import com.api.rest.biblioteca.dto.ParcheBiblioteca;
+import com.api.rest.biblioteca.dto.ResultadoMovimiento;
+import com.api.rest.biblioteca.dto.VersionBiblioteca;
 import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
 import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.api.rest.biblioteca.services.EliminacionBibliotecaService;
+import com.api.rest.biblioteca.services.EstadisticasService;
+import com.api.rest.biblioteca.services.ExportacionService;
+import com.api.rest.biblioteca.services.LecturasCompartidas;
+import com.api.rest.biblioteca.services.LecturasCompartidas.Consulta;
+import com.api.rest.biblioteca.services.MovimientoLibrosService;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import jakarta.validation.Valid;
 
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 
 @RestController
@@ -32,6 +67,30 @@ public class BibliotecaController {
     @Autowired
     private BibliotecaRepository bibliotecaRepository;
 
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    @Autowired
+    private EstadisticasService estadisticasService;
+
+    @Autowired
+    private EliminacionBibliotecaService eliminacionBibliotecaService;
+
+    @Autowired
+    private MovimientoLibrosService movimientoLibrosService;
+
+    @Autowired
+    private LecturasCompartidas lecturasCompartidas;
+
+    @Autowired
+    private CacheControl cacheControl;
+
+    @Value("${spring.data.web.pageable.max-page-size:2000}")
+    private int tamanoMaximoPagina;
+
     @PostMapping
     public ResponseEntity<Biblioteca> guardarBiblioteca(@Valid @RequestBody Biblioteca biblioteca){
     
@@ -56,6 +115,7 @@ public class BibliotecaController {
     }
 
     @PutMapping("/{id}")
+    @Transactional
     public ResponseEntity<Biblioteca> actualizarBiblioteca(@PathVariable Long id, @Valid @RequestBody Biblioteca biblioteca){
         Optional<Biblioteca> bibliotecaOptional = bibliotecaRepository.findById(id);
 
@@ -73,7 +133,17 @@ public class BibliotecaController {
          entidad que se está guardando tiene el mismo ID que la biblioteca existente.
          */
         biblioteca.setId(bibliotecaOptional.get().getId());
+        biblioteca.setCodigo(bibliotecaOptional.get().getCodigo()); //el código no viene en el JSON: se conserva el guardado
+        conservarCodigos(biblioteca);
+        if(biblioteca.getVersion() == null){
+            //sin versión en la solicitud se reemplaza la versión actual; con una versión vieja se responde HTTP 409 (ver ManejadorConflictos)
+            biblioteca.setVersion(bibliotecaOptional.get().getVersion());
+        }
         bibliotecaRepository.save(biblioteca);
+        if(!biblioteca.getLibros().isEmpty()){
+            //los libros de la solicitud se guardan en cascada: cambia la versión de los libros de la biblioteca, y con ella su ETag
+            estadisticasService.libroModificado(biblioteca.getId());
+        }
 
         /*
          Si la actualización se realiza correctamente, se devuelve una respuesta HTTP 204 (No Content),
@@ -82,20 +152,90 @@ public class BibliotecaController {
         return ResponseEntity.noContent().build();
     }
 
-    @DeleteMapping("/{id}")
-    public ResponseEntity<Biblioteca> eliminarBiblioteca(@PathVariable Long id){
+    /*
+     Los libros de la solicitud que ya existen tampoco traen su código (ver Libro): se les copia el guardado, porque save
+     lo reemplazaría en los libros administrados. Leerlos acá no agrega consultas, save igual los lee para combinarlos.
+     Como hashCode depende del código, los libros se vuelven a agregar a un conjunto nuevo.
+     */
+    private void conservarCodigos(Biblioteca biblioteca){
+        Set<Long> ids = biblioteca.getLibros().stream().map(Libro::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+        if(ids.isEmpty()){
+            return;
+        }
+        Map<Long, String> codigos = libroRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Libro::getId, Libro::getCodigo));
+        for(Libro libro : biblioteca.getLibros()){
+            String codigo = codigos.get(libro.getId());
+            if(codigo != null){
+                libro.setCodigo(codigo);
+            }
+        }
+        biblioteca.setLibros(new HashSet<>(biblioteca.getLibros()));
+    }
+
+    /*
+     Modificación parcial: PATCH /api/biblioteca/{id} con Content-Type application/merge-patch+json, por ejemplo 
+     {"nombre": "Central", "version": 3}. A diferencia de actualizarBiblioteca no reemplaza los libros de la 
+     biblioteca con los de la solicitud: lee la biblioteca, le cambia el nombre y Hibernate ejecuta un UPDATE 
+     solo de esa columna (y de la versión). Si "version" no es la actual, se responde HTTP 409 (Conflict).
+     */
+    @PatchMapping(path = "/{id}", consumes = "application/merge-patch+json")
+    @Transactional
+    public ResponseEntity<Biblioteca> modificarBiblioteca(@PathVariable Long id, @RequestBody JsonNode cuerpo){
+        ParcheBiblioteca parche;
+        try {
+            parche = ParcheBiblioteca.leer(cuerpo);
+        } catch (IllegalArgumentException e) {
+            //el parche no es un objeto o tiene campos que no se pueden modificar: HTTP 400 (Bad Request)
+            return ResponseEntity.badRequest().build();
+        }
+
         Optional<Biblioteca> bibliotecaOptional = bibliotecaRepository.findById(id);
 
         if(!bibliotecaOptional.isPresent()){
             /*
-             Si bibliotecaOptional no contiene un valor (es decir, la biblioteca no existe), 
-             se devuelve una respuesta HTTP 422 (Unprocessable Entity) para indicar que la 
+             Si la biblioteca no existe, se devuelve una respuesta HTTP 422 (Unprocessable Entity) para indicar que la 
              solicitud es válida, pero no se puede procesar porque el recurso no existe.
              */
             return ResponseEntity.unprocessableEntity().build();
         }
 
-        bibliotecaRepository.delete(bibliotecaOptional.get()); //si lo encuentra, lo elimina
+        Biblioteca biblioteca = bibliotecaOptional.get();
+        if(parche.version() != null && !parche.version().equals(biblioteca.getVersion())){
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        if(parche.nombre() != null){
+            biblioteca.setNombre(parche.nombre());
+        }
+        bibliotecaRepository.flush(); //el UPDATE se ejecuta acá, así un conflicto de versión se informa con HTTP 409
+
+        return ResponseEntity.noContent().build();
+    }
+
+    /*
+     Elimina la biblioteca y sus libros por tramos, con un DELETE por tramo en lugar de uno por libro 
+     (ver EliminacionBibliotecaService). Con async=true la eliminación sigue en segundo plano: se responde 
+     HTTP 202 (Accepted) con la URI donde consultar su estado.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<EliminacionBiblioteca> eliminarBiblioteca(@PathVariable Long id, @RequestParam(defaultValue = "false") boolean async){
+        if(!bibliotecaRepository.existsById(id)){
+            /*
+             Si la biblioteca no existe, se devuelve una respuesta HTTP 422 (Unprocessable Entity) para indicar que la 
+             solicitud es válida, pero no se puede procesar porque el recurso no existe.
+             */
+            return ResponseEntity.unprocessableEntity().build();
+        }
+
+        if(async){
+            EliminacionBiblioteca eliminacion = eliminacionBibliotecaService.iniciar(id);
+            URI ubicacion = ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/biblioteca/eliminaciones/{id}")
+                    .buildAndExpand(eliminacion.id()).toUri();
+            return ResponseEntity.accepted().location(ubicacion).body(eliminacion);
+        }
+
+        eliminacionBibliotecaService.eliminar(id); //si la encuentra, la elimina junto con sus libros
         
         /*
          Si la eliminación se realiza correctamente, se devuelve una respuesta HTTP 204 (No Content),
@@ -104,45 +244,225 @@ public class BibliotecaController {
         return ResponseEntity.noContent().build();
     }
 
+    /*
+     Mueve libros a la biblioteca destino en lote: POST /api/biblioteca/{destino}/libros/move con 
+     {"ids": [1, 2, 3]} o con {"desde": 7} (todos los libros de la biblioteca 7). Los libros se mueven con un 
+     UPDATE por tramo, en una sola transacción (ver MovimientoLibrosService), en lugar de un PUT por libro.
+     */
+    @PostMapping("/{destino}/libros/move")
+    public ResponseEntity<ResultadoMovimiento> moverLibros(@PathVariable Long destino, @RequestBody MovimientoLibros movimiento){
+        if((movimiento.ids() == null) == (movimiento.desde() == null)){
+            //se debe indicar ids o desde, y uno solo de los dos: se responde HTTP 400 (Bad Request)
+            return ResponseEntity.badRequest().build();
+        }
+
+        if(!bibliotecaRepository.existsById(destino) || (movimiento.desde() != null && !bibliotecaRepository.existsById(movimiento.desde()))){
+            /*
+             Si la biblioteca destino (o la de origen) no existe, se devuelve una respuesta HTTP 422 (Unprocessable Entity) 
+             para indicar que la solicitud es válida, pero no se puede procesar porque el recurso no existe.
+             */
+            return ResponseEntity.unprocessableEntity().build();
+        }
+
+        if(movimiento.desde() != null){
+            return ResponseEntity.ok(movimientoLibrosService.moverBiblioteca(movimiento.desde(), destino));
+        }
+        return ResponseEntity.ok(movimientoLibrosService.moverLibros(movimiento.ids(), destino));
+    }
+
+    //estado de una eliminación en segundo plano: GET /api/biblioteca/eliminaciones/{id}
+    @GetMapping("/eliminaciones/{id}")
+    public ResponseEntity<EliminacionBiblioteca> obtenerEliminacion(@PathVariable String id) {
+        Optional<EliminacionBiblioteca> eliminacionOptional = eliminacionBibliotecaService.estado(id);
+
+        if(!eliminacionOptional.isPresent()){
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(eliminacionOptional.get());
+    }
+
+    /*
+     La respuesta lleva un ETag con la versión de la biblioteca y la de sus libros (VersionBiblioteca), que cambia 
+     cuando cambia la biblioteca o cualquiera de sus libros (ver EstadisticasService). Si el cliente envía ese ETag en If-None-Match, se responde HTTP 304 
+     (Not Modified) sin leer los libros ni armar el JSON.
+
+     Las consultas pasan por LecturasCompartidas: si llegan muchas solicitudes por la misma biblioteca a la vez, la 
+     base recibe una sola vez las consultas de la versión y de los datos, y las demás solicitudes esperan ese resultado. 
+     Cada carga usa su propia transacción de solo lectura (con réplicas configuradas, en una réplica), por eso este 
+     método no es @Transactional.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Biblioteca> obtenerBibliotecaPorId(@PathVariable Long id) {
-        Optional<Biblioteca> bibliotecaOptional = bibliotecaRepository.findById(id);
+    public ResponseEntity<BibliotecaResumen> obtenerBibliotecaPorId(@PathVariable Long id, WebRequest solicitud) {
+        //la versión se lee antes que los datos: si cambian entre las consultas, el ETag queda viejo y la próxima solicitud recibe 200
+        Optional<VersionBiblioteca> versionOptional = lecturasCompartidas.leer(Consulta.VERSION_BIBLIOTECA, id, () -> bibliotecaRepository.findVersionById(id));
 
-        if(!bibliotecaOptional.isPresent()){
+        if(!versionOptional.isPresent()){
             /*
-             Si bibliotecaOptional no contiene un valor (es decir, la biblioteca no existe), 
-             se devuelve una respuesta HTTP 422 (Unprocessable Entity) para indicar que la 
+             Si la biblioteca no existe, se devuelve una respuesta HTTP 422 (Unprocessable Entity) para indicar que la 
              solicitud es válida, pero no se puede procesar porque el recurso no existe.
              */
             return ResponseEntity.unprocessableEntity().build();
         }
 
+        String etag = versionOptional.get().etag();
+        if(solicitud.checkNotModified(etag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        //la biblioteca y su cantidad de libros, sin crear entidades, con sus libros
+        Optional<BibliotecaResumen> bibliotecaOptional = lecturasCompartidas.leer(Consulta.BIBLIOTECA, id,
+                () -> bibliotecaRepository.findResumenById(id).map(biblioteca -> conLibros(List.of(biblioteca)).get(0)));
+
+        if(!bibliotecaOptional.isPresent()){
+            //la biblioteca se eliminó después de leer su versión
+            return ResponseEntity.unprocessableEntity().build();
+        }
+
         /*
          Si encontro la biblioteca, devuelve una respuesta HTTP con el estado 200 (OK) junto 
-         con el objeto Biblioteca encontrado.
+         con la biblioteca encontrada y sus libros.
          */
-        return ResponseEntity.ok(bibliotecaOptional.get());
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(bibliotecaOptional.get());
+    }
+
+    /*
+     Estadísticas: GET /api/biblioteca/stats?top=10 devuelve la cantidad total de bibliotecas y de libros, 
+     y las "top" bibliotecas con más libros. Las cantidades las calcula la base de datos (ver EstadisticasService), 
+     sin cargar los libros en memoria.
+     */
+    @GetMapping("/stats")
+    @Transactional(readOnly = true)
+    public ResponseEntity<EstadisticasBibliotecas> obtenerEstadisticas(@RequestParam(defaultValue = "10") int top) {
+        if(top < 1 || top > 100){
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(estadisticasService.generales(top));
+    }
+
+    //cantidad de libros de una biblioteca: GET /api/biblioteca/{id}/stats
+    @GetMapping("/{id}/stats")
+    @Transactional(readOnly = true)
+    public ResponseEntity<EstadisticasBiblioteca> obtenerEstadisticasPorId(@PathVariable Long id) {
+        Optional<EstadisticasBiblioteca> estadisticasOptional = estadisticasService.deBiblioteca(id);
+
+        if(!estadisticasOptional.isPresent()){
+            /*
+             Si la biblioteca no existe, se devuelve una respuesta HTTP 422 (Unprocessable Entity) para indicar que la 
+             solicitud es válida, pero no se puede procesar porque el recurso no existe.
+             */
+            return ResponseEntity.unprocessableEntity().build();
+        }
+
+        return ResponseEntity.ok(estadisticasOptional.get());
+    }
+
+    /*
+     Exporta los libros de una biblioteca en NDJSON (por defecto) o CSV (formato=csv), 
+     escribiéndolos en la respuesta a medida que se leen de la base de datos.
+     */
+    @GetMapping("/{id}/libros/export")
+    public ResponseEntity<StreamingResponseBody> exportarLibros(@PathVariable Long id, @RequestParam(defaultValue = "ndjson") String formato) {
+        if(!bibliotecaRepository.existsById(id)){
+            /*
+             Si la biblioteca no existe, se devuelve una respuesta HTTP 422 (Unprocessable Entity) para indicar que la 
+             solicitud es válida, pero no se puede procesar porque el recurso no existe.
+             */
+            return ResponseEntity.unprocessableEntity().build();
+        }
+
+        Optional<ExportacionService.Formato> formatoOptional = ExportacionService.Formato.desde(formato);
+
+        if(!formatoOptional.isPresent()){
+            //el formato no es ndjson ni csv: se responde HTTP 400 (Bad Request)
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody cuerpo = salida -> exportacionService.exportar(id, formatoOptional.get(), salida);
+        return ResponseEntity.ok().contentType(formatoOptional.get().getTipoContenido()).body(cuerpo);
     }
 
     /*
      devuelve una lista paginada de bibliotecas. Recibe un objeto de tipo Pageable como 
-     parámetro, que contiene información sobre la paginación
+     parámetro, que contiene información sobre la paginación, y el parámetro include, que 
+     indica si cada biblioteca se devuelve con sus libros (include=libros, el valor por defecto) 
+     o sin ellos (por ejemplo include=ninguno), lo que evita leer la tabla de libros. include es una 
+     lista separada por comas (include=libros,otro): Spring la separa y se busca el valor exacto "libros", 
+     así un valor como "sinlibros" no incluye los libros.
      */
     @GetMapping
-    public ResponseEntity<Page<Biblioteca>> listarBibliotecas(Pageable pageable) {
+    @Transactional(readOnly = true)
+    public ResponseEntity<Page<BibliotecaResumen>> listarBibliotecas(Pageable pageable, @RequestParam(defaultValue = "libros") Set<String> include) {
         
         /* 
-         devuelve un objeto ResponseEntity que contiene una página (Page) de objetos 
-         Biblioteca. ResponseEntity.ok() indica que la respuesta HTTP tendrá un código 
-         de estado 200 (OK).
+         devuelve un objeto ResponseEntity que contiene una página (Page) de bibliotecas. 
+         ResponseEntity.ok() indica que la respuesta HTTP tendrá un código de estado 200 (OK).
 
 
-         bibliotecaRepository.findAll(pageable): Este método invoca al repositorio de 
+         bibliotecaRepository.findResumenes(pageable): Este método invoca al repositorio de 
          bibliotecas (bibliotecaRepository) para buscar todas las entradas en la base 
-         de datos, aplicando paginación según lo especificado en el objeto Pageable
+         de datos, aplicando paginación según lo especificado en el objeto Pageable, 
+         junto con la cantidad de libros de cada una.
         */
+        Page<BibliotecaResumen> bibliotecas = bibliotecaRepository.findResumenes(pageable);
+
+        if(!include.contains("libros")){
+            return ResponseEntity.ok(bibliotecas);
+        }
+
+        /*
+         Con libros, se leen los libros de todas las bibliotecas de la página en una sola consulta, 
+         así la cantidad de consultas no depende del tamaño de la página.
+         */
+        return ResponseEntity.ok(new PageImpl<>(conLibros(bibliotecas.getContent()), pageable, bibliotecas.getTotalElements()));
+    }
+
+    /*
+     Paginación por cursor: GET /api/biblioteca?after=<cursor>&size=20, con el mismo parámetro include 
+     que listarBibliotecas. Para la primera página se envía after vacío, y para las siguientes el valor 
+     "siguiente" de la respuesta anterior. No usa OFFSET ni cuenta el total, salvo que se pida con total=true.
+     */
+    @GetMapping(params = "after")
+    @Transactional(readOnly = true)
+    public ResponseEntity<PaginaCursor<BibliotecaResumen>> listarBibliotecasPorCursor(@RequestParam String after, @RequestParam(defaultValue = "20") int size, 
+            @RequestParam(defaultValue = "false") boolean total, @RequestParam(defaultValue = "libros") Set<String> include) {
+        Long desde;
+        try {
+            desde = PaginaCursor.decodificar(after);
+        } catch (IllegalArgumentException e) {
+            //el cursor no fue generado por este servicio: se responde HTTP 400 (Bad Request)
+            return ResponseEntity.badRequest().build();
+        }
+
+        if(size < 1){
+            return ResponseEntity.badRequest().build();
+        }
+        int tamano = Math.min(size, tamanoMaximoPagina);
+
+        //se lee una biblioteca más de las pedidas para saber si hay una página siguiente
+        List<BibliotecaResumen> leidas = bibliotecaRepository.findResumenesDespuesDe(desde, Limit.of(tamano + 1));
+        PaginaCursor<BibliotecaResumen> pagina = PaginaCursor.de(leidas, tamano, BibliotecaResumen::id, total ? bibliotecaRepository.count() : null);
+
+        if(!include.contains("libros")){
+            return ResponseEntity.ok(pagina);
+        }
+
+        return ResponseEntity.ok(new PaginaCursor<>(conLibros(pagina.contenido()), pagina.siguiente(), pagina.total()));
+    }
+
+    //agrega a cada biblioteca sus libros, leídos con una sola consulta para todas
+    private List<BibliotecaResumen> conLibros(List<BibliotecaResumen> bibliotecas) {
+        if(bibliotecas.isEmpty()){
+            return bibliotecas;
+        }
+
+        Map<Long, List<LibroResumen>> librosPorBiblioteca = libroRepository
+                .findResumenesByBibliotecaIdIn(bibliotecas.stream().map(BibliotecaResumen::id).toList())
+                .stream().collect(Collectors.groupingBy(LibroResumen::bibliotecaId));
 
-        return ResponseEntity.ok(bibliotecaRepository.findAll(pageable));
+        return bibliotecas.stream()
+                .map(biblioteca -> biblioteca.conLibros(librosPorBiblioteca.getOrDefault(biblioteca.id(), List.of())))
+                .toList();
     }
     
 }
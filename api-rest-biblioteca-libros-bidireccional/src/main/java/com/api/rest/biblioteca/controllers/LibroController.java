@@ -1,29 +1,54 @@
 package com.api.rest.biblioteca.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.api.rest.biblioteca.dto.LibroResumen;
+import com.api.rest.biblioteca.dto.PaginaCursor;
+import com.api.rest.biblioteca.dto.ParcheLibro;
+import com.api.rest.biblioteca.dto.ResultadoBusqueda;
+import com.api.rest.biblioteca.dto.ResultadoLote;
 import com.api.rest.biblioteca.entities.Biblioteca;
 import com.api.rest.biblioteca.entities.Libro;
 import com.api.rest.biblioteca.repositories.BibliotecaRepository;
 import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.api.rest.biblioteca.services.EstadisticasService;
+import com.api.rest.biblioteca.services.ExportacionService;
+import com.api.rest.biblioteca.services.IndiceLibros;
+import com.api.rest.biblioteca.services.LecturasCompartidas;
+import com.api.rest.biblioteca.services.LecturasCompartidas.Consulta;
+import com.api.rest.biblioteca.services.LibroLoteService;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import jakarta.validation.Valid;
 
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 
 @RestController
@@ -37,7 +62,33 @@ public class LibroController {
     @Autowired
     private BibliotecaRepository bibliotecaRepository;
 
+    @Autowired
+    private LibroLoteService libroLoteService;
+
+    @Autowired
+    private IndiceLibros indiceLibros;
+
+    @Autowired
+    private EstadisticasService estadisticasService;
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    @Autowired
+    private LecturasCompartidas lecturasCompartidas;
+
+    @Autowired
+    private CacheControl cacheControl;
+
+    @Value("${spring.data.web.pageable.max-page-size:2000}")
+    private int tamanoMaximoPagina;
+
+    /*
+     Las escrituras de un libro son @Transactional: el libro y la cantidad de libros de su biblioteca 
+     (EstadisticasService) se guardan juntos, o no se guarda ninguno de los dos.
+     */
     @PostMapping
+    @Transactional
     public ResponseEntity<Libro> guardarLibro(@Valid @RequestBody Libro libro){
     
         Optional<Biblioteca> bibliotecaOptional = bibliotecaRepository.findById(libro.getBiblioteca().getId());
@@ -53,6 +104,7 @@ public class LibroController {
         }
 
         libro.setBiblioteca(bibliotecaOptional.get());
+        estadisticasService.libroAgregado(libro.getBiblioteca().getId()); //en la misma transacción que el alta del libro
         Libro libroGuardado = libroRepository.save(libro);
 
         /*
@@ -73,8 +125,28 @@ public class LibroController {
         //URI significa Uniform Resource Identifier (Identificador Uniforme de Recursos). Es una cadena de caracteres que se utiliza para identificar un recurso en Internet de manera única
     }
 
+    /*
+     Carga masiva de libros. El cuerpo puede ser un arreglo JSON o NDJSON (un libro por linea),
+     con el mismo formato que recibe guardarLibro: {"nombre": "...", "biblioteca": {"id": 1}}.
+
+     Los libros se leen de a uno desde el cuerpo y se insertan en lotes, por lo que la solicitud
+     no necesita caber entera en memoria. Los libros que no se pueden guardar (nombre repetido,
+     biblioteca inexistente, datos faltantes o de otro tipo) no cancelan la carga: se informan en la respuesta,
+     con su posición. Si el cuerpo deja de ser JSON válido, se informa lo guardado hasta ese libro.
+     */
+    @PostMapping(path = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ResultadoLote> guardarLibros(InputStream cuerpo){
+        try {
+            return ResponseEntity.ok(libroLoteService.guardarLote(cuerpo));
+        } catch (IOException e) {
+            //el cuerpo no es JSON valido desde el primer libro: se responde HTTP 400 (Bad Request)
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
 
     @PutMapping("{id}")
+    @Transactional
     public ResponseEntity<Libro> actualizarLibro(@PathVariable Long id, @Valid @RequestBody Libro libro){
     
         Optional<Biblioteca> bibliotecaOptional = bibliotecaRepository.findById(libro.getBiblioteca().getId());
@@ -89,7 +161,7 @@ public class LibroController {
             return ResponseEntity.unprocessableEntity().build();
         }
 
-        Optional<Libro> libroOptional = libroRepository.findById(id);
+        Optional<Libro> libroOptional = buscarParaModificar(id);
 
         if(!libroOptional.isPresent()){
             /*
@@ -102,8 +174,19 @@ public class LibroController {
 
 
 
+        //si el libro cambia de biblioteca, se actualiza la cantidad de libros de las dos
+        estadisticasService.libroMovido(libroOptional.get().getBiblioteca().getId(), bibliotecaOptional.get().getId());
+
         libro.setBiblioteca(bibliotecaOptional.get()); //se obtiene la biblioteca
         libro.setId(libroOptional.get().getId());
+        libro.setCodigo(libroOptional.get().getCodigo()); //el código no viene en el JSON: se conserva el guardado (ver Libro)
+        if(libro.getVersion() == null){
+            /*
+             Si la solicitud no trae la versión del libro se reemplaza la versión actual. Si la trae y otra 
+             solicitud ya modificó el libro, save lanza una excepción y se responde HTTP 409 (ver ManejadorConflictos).
+             */
+            libro.setVersion(libroOptional.get().getVersion());
+        }
         libroRepository.save(libro); //se guarda el libro
 
 
@@ -116,9 +199,59 @@ public class LibroController {
 
     }
 
+    /*
+     Modificación parcial: PATCH /api/libros/{id} con Content-Type application/merge-patch+json (JSON Merge Patch).
+     Solo se modifican los campos que trae el parche, por ejemplo {"nombre": "Rayuela"} o {"biblioteca": {"id": 2}}.
+     
+     A diferencia de actualizarLibro, no arma un libro nuevo con la solicitud para que save lo combine con el 
+     guardado: lee el libro, le cambia los campos del parche, y al terminar la transacción Hibernate ejecuta un 
+     UPDATE solo de las columnas que cambiaron (@DynamicUpdate en Libro). Si el parche trae "version" y el libro 
+     ya tiene otra versión, se responde HTTP 409 (Conflict).
+     */
+    @PatchMapping(path = "/{id}", consumes = "application/merge-patch+json")
+    @Transactional
+    public ResponseEntity<Libro> modificarLibro(@PathVariable Long id, @RequestBody JsonNode cuerpo){
+        ParcheLibro parche;
+        try {
+            parche = ParcheLibro.leer(cuerpo);
+        } catch (IllegalArgumentException e) {
+            //el parche no es un objeto, tiene campos que no existen o quita un campo obligatorio: HTTP 400 (Bad Request)
+            return ResponseEntity.badRequest().build();
+        }
+
+        Optional<Libro> libroOptional = libroRepository.findById(id);
+
+        if(!libroOptional.isPresent() || (parche.bibliotecaId() != null && !bibliotecaRepository.existsById(parche.bibliotecaId()))){
+            /*
+             Si el libro (o la biblioteca a la que se lo quiere mover) no existe, se devuelve una respuesta HTTP 422 
+             (Unprocessable Entity) para indicar que la solicitud es válida, pero no se puede procesar porque el recurso no existe.
+             */
+            return ResponseEntity.unprocessableEntity().build();
+        }
+
+        Libro libro = libroOptional.get();
+        if(parche.version() != null && !parche.version().equals(libro.getVersion())){
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        //cambia la versión de los libros de su biblioteca (y de la de destino, si se mueve), y con ella el ETag de la biblioteca
+        estadisticasService.libroMovido(libro.getBiblioteca().getId(), parche.bibliotecaId() != null ? parche.bibliotecaId() : libro.getBiblioteca().getId());
+        if(parche.nombre() != null){
+            libro.setNombre(parche.nombre());
+        }
+        if(parche.bibliotecaId() != null){
+            libro.setBiblioteca(bibliotecaRepository.getReferenceById(parche.bibliotecaId())); //no consulta la base
+        }
+        //el UPDATE se ejecuta acá y no al confirmar, así un conflicto de versión o un nombre repetido se informan como los de save
+        libroRepository.flush();
+
+        return ResponseEntity.noContent().build();
+    }
+
     @DeleteMapping("/{id}")
+    @Transactional
     public ResponseEntity<Libro> eliminarLibro(@PathVariable Long id){
-        Optional<Libro> libroOptional = libroRepository.findById(id);
+        Optional<Libro> libroOptional = buscarParaModificar(id);
 
         if(!libroOptional.isPresent()){
              /*
@@ -129,6 +262,7 @@ public class LibroController {
             return ResponseEntity.unprocessableEntity().build();
         }
 
+        estadisticasService.libroEliminado(libroOptional.get().getBiblioteca().getId());
         libroRepository.delete(libroOptional.get()); //si lo encuentra, lo elimina
         
         /*
@@ -139,42 +273,157 @@ public class LibroController {
     }
 
 
+    /*
+     Con el contador de libros (biblioteca.estadisticas.contador=true), el libro se lee bloqueando su fila hasta el final 
+     de la transacción, así dos solicitudes sobre el mismo libro no restan el libro dos veces de la misma biblioteca. 
+     Sin el contador no se bloquea: si otra solicitud modificó el libro, el bloqueo optimista rechaza la segunda con HTTP 409.
+     */
+    private Optional<Libro> buscarParaModificar(Long id){
+        return estadisticasService.usaContador() ? libroRepository.findByIdParaActualizar(id) : libroRepository.findById(id);
+    }
+
+    /*
+     Las lecturas son @Transactional(readOnly = true): todas las consultas de la solicitud usan la misma conexión, 
+     que con réplicas configuradas (biblioteca.replicas.urls) se toma de una réplica en lugar de la base principal.
+     */
     @GetMapping
-    public ResponseEntity<Page<Libro>> listarLibros(Pageable pageable) {
+    @Transactional(readOnly = true)
+    public ResponseEntity<Page<LibroResumen>> listarLibros(Pageable pageable) {
         
         /* 
-         devuelve un objeto ResponseEntity que contiene una página (Page) de objetos 
-         Libro. ResponseEntity.ok() indica que la respuesta HTTP tendrá un código 
+         devuelve un objeto ResponseEntity que contiene una página (Page) de libros. 
+         ResponseEntity.ok() indica que la respuesta HTTP tendrá un código 
          de estado 200 (OK).
 
 
-         libroRepository.findAll(pageable): Este método invoca al repositorio de libros 
+         libroRepository.findResumenes(pageable): Este método invoca al repositorio de libros 
          (libroRepository) para buscar todas las entradas en la base 
-         de datos, aplicando paginación según lo especificado en el objeto Pageable
+         de datos, aplicando paginación según lo especificado en el objeto Pageable.
+         Devuelve LibroResumen en lugar de entidades Libro: Hibernate no tiene que 
+         administrarlas, y la respuesta incluye el id de la biblioteca de cada libro.
         */
 
-        return ResponseEntity.ok(libroRepository.findAll(pageable));
+        return ResponseEntity.ok(libroRepository.findResumenes(pageable));
+    }
+
+
+    /*
+     Paginación por cursor: GET /api/libros?after=<cursor>&size=20. Para la primera página se envía 
+     after vacío (?after=&size=20), y para las siguientes el valor "siguiente" de la respuesta anterior.
+
+     A diferencia de listarLibros, la consulta es "id > cursor ORDER BY id", que la base resuelve con 
+     el índice de la clave primaria: la página 10.000 cuesta lo mismo que la primera. Tampoco se 
+     cuenta el total de libros, salvo que se pida con total=true.
+     */
+    @GetMapping(params = "after")
+    @Transactional(readOnly = true)
+    public ResponseEntity<PaginaCursor<LibroResumen>> listarLibrosPorCursor(@RequestParam String after, @RequestParam(defaultValue = "20") int size, @RequestParam(defaultValue = "false") boolean total) {
+        Long desde;
+        try {
+            desde = PaginaCursor.decodificar(after);
+        } catch (IllegalArgumentException e) {
+            //el cursor no fue generado por este servicio: se responde HTTP 400 (Bad Request)
+            return ResponseEntity.badRequest().build();
+        }
+
+        if(size < 1){
+            return ResponseEntity.badRequest().build();
+        }
+        int tamano = Math.min(size, tamanoMaximoPagina);
+
+        //se lee un libro más de los pedidos para saber si hay una página siguiente
+        List<LibroResumen> libros = libroRepository.findResumenesDespuesDe(desde, Limit.of(tamano + 1));
+
+        return ResponseEntity.ok(PaginaCursor.de(libros, tamano, LibroResumen::id, total ? libroRepository.count() : null));
+    }
+
+
+    /*
+     Exporta el catálogo completo: GET /api/libros/export?formato=ndjson (por defecto) o formato=csv.
+
+     StreamingResponseBody escribe la respuesta en otro hilo a medida que se leen los libros, 
+     por lo que ni la respuesta ni el resultado de la consulta se cargan completos en memoria.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportarLibros(@RequestParam(defaultValue = "ndjson") String formato) {
+        Optional<ExportacionService.Formato> formatoOptional = ExportacionService.Formato.desde(formato);
+
+        if(!formatoOptional.isPresent()){
+            //el formato no es ndjson ni csv: se responde HTTP 400 (Bad Request)
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody cuerpo = salida -> exportacionService.exportar(null, formatoOptional.get(), salida);
+        return ResponseEntity.ok().contentType(formatoOptional.get().getTipoContenido()).body(cuerpo);
+    }
+
+
+    /*
+     Busca libros por nombre: GET /api/libros/search?q=cien años&size=20
+
+     La búsqueda se resuelve con el índice en memoria (IndiceLibros), sin consultar la base de datos.
+     Los resultados vienen ordenados por relevancia, y si q termina en medio de una palabra esa palabra
+     se completa, así que sirve para buscar mientras el usuario escribe.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<ResultadoBusqueda>> buscarLibros(@RequestParam String q, @RequestParam(defaultValue = "20") int size) {
+        if(size < 1 || size > 100){
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(indiceLibros.buscar(q, size));
+    }
+
+    /*
+     Autocompletado: GET /api/libros/search/suggest?q=sol devuelve las palabras de los nombres de los libros 
+     que empiezan con "sol", primero las más frecuentes.
+     */
+    @GetMapping("/search/suggest")
+    public ResponseEntity<List<String>> sugerirPalabras(@RequestParam String q, @RequestParam(defaultValue = "10") int size) {
+        if(size < 1 || size > 100){
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(indiceLibros.sugerir(q, size));
     }
 
 
+    /*
+     La respuesta lleva un ETag con la versión del libro. Si el cliente envía ese ETag en If-None-Match y el libro 
+     no cambió, se responde HTTP 304 (Not Modified) sin cuerpo: solo se consulta la versión, sin leer el libro.
+
+     Las consultas pasan por LecturasCompartidas: si llegan muchas solicitudes por el mismo libro a la vez, la base 
+     recibe una sola consulta de la versión y una sola del libro, y las demás solicitudes esperan ese resultado.
+     Cada consulta usa su propia transacción de solo lectura, por eso este método no es @Transactional.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Libro> listarLibro(@PathVariable Long id) {
-        Optional<Libro> libroOptional = libroRepository.findById(id);
+    public ResponseEntity<LibroResumen> listarLibro(@PathVariable Long id, WebRequest solicitud) {
+        //la versión se lee antes que el libro: si cambia entre las dos consultas, el ETag queda viejo y la próxima solicitud recibe 200
+        Optional<Long> versionOptional = lecturasCompartidas.leer(Consulta.VERSION_LIBRO, id, () -> libroRepository.findVersionById(id));
 
-        if(!libroOptional.isPresent()){
+        if(!versionOptional.isPresent()){
              /*
-             Si libroOptional no contiene un valor (es decir, el libro no existe), 
-             se devuelve una respuesta HTTP 422 (Unprocessable Entity) para indicar que la 
+             Si el libro no existe, se devuelve una respuesta HTTP 422 (Unprocessable Entity) para indicar que la 
              solicitud es válida, pero no se puede procesar porque el recurso no existe.
              */
             return ResponseEntity.unprocessableEntity().build();
         }
 
+        String etag = "\"" + versionOptional.get() + "\"";
+        if(solicitud.checkNotModified(etag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        Optional<LibroResumen> libroOptional = lecturasCompartidas.leer(Consulta.LIBRO, id, () -> libroRepository.findResumenById(id));
+
+        if(!libroOptional.isPresent()){
+            //el libro se eliminó después de leer su versión
+            return ResponseEntity.unprocessableEntity().build();
+        }
+
         /*
          Si encontro el libro, devuelve una respuesta HTTP con el estado 200 (OK) junto 
-         con el objeto Libro encontrado.
+         con el libro encontrado.
          */
-        return ResponseEntity.ok(libroOptional.get());
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(libroOptional.get());
     }
 
 }
@@ -0,0 +1,23 @@
+package com.api.rest.biblioteca.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/*
+ Respuesta de los controladores cuando falla el bloqueo optimista (@Version en Libro y Biblioteca): otra
+ solicitud modificó el libro o la biblioteca después de que se leyó, o la solicitud trae una versión vieja.
+ En lugar de un error 500 se responde HTTP 409 (Conflict): el cliente debe volver a leer el recurso y
+ repetir su cambio sobre la versión actual.
+ */
+@RestControllerAdvice
+public class ManejadorConflictos {
+
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<Void> versionDesactualizada(ObjectOptimisticLockingFailureException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.api.rest.biblioteca.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/*
+ Vista de solo lectura de una biblioteca, para las respuestas de los GET.
+ cantidadLibros: cantidad de libros de la biblioteca, calculada por la base de datos
+ libros: los libros de la biblioteca; es null (y no aparece en el JSON) cuando no se piden
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BibliotecaResumen(Long id, String nombre, long cantidadLibros, List<LibroResumen> libros) {
+
+    //constructor que usan las consultas de BibliotecaRepository (select new ...)
+    public BibliotecaResumen(Long id, String nombre, long cantidadLibros) {
+        this(id, nombre, cantidadLibros, null);
+    }
+
+    public BibliotecaResumen conLibros(List<LibroResumen> libros) {
+        return new BibliotecaResumen(id, nombre, cantidadLibros, libros);
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.api.rest.biblioteca.dto;
+
+/*
+ Estado de la eliminacion en segundo plano de una biblioteca: GET /api/biblioteca/eliminaciones/{id}
+ id: identificador de la eliminacion
+ librosEliminados: cantidad de libros eliminados hasta el momento
+ error: motivo por el que fallo, solo cuando estado es FALLIDA
+ */
+public record EliminacionBiblioteca(String id, Long bibliotecaId, Estado estado, long librosEliminados, String error) {
+
+    public enum Estado {
+        EN_CURSO,
+        TERMINADA,
+        FALLIDA
+    }
+
+    public EliminacionBiblioteca conAvance(long librosEliminados) {
+        return new EliminacionBiblioteca(id, bibliotecaId, estado, librosEliminados, error);
+    }
+
+    public EliminacionBiblioteca terminada() {
+        return new EliminacionBiblioteca(id, bibliotecaId, Estado.TERMINADA, librosEliminados, null);
+    }
+
+    public EliminacionBiblioteca fallida(String error) {
+        return new EliminacionBiblioteca(id, bibliotecaId, Estado.FALLIDA, librosEliminados, error);
+    }
+
+}
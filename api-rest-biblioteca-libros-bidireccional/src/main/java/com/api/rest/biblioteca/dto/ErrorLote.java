@@ -0,0 +1,10 @@
+package com.api.rest.biblioteca.dto;
+
+/*
+ Describe un libro del lote que no se pudo guardar.
+ indice: posicion del libro dentro del lote recibido (empieza en 0)
+ nombre: nombre del libro, tal como vino en la solicitud
+ motivo: explicacion de por que se rechazo
+ */
+public record ErrorLote(int indice, String nombre, String motivo) {
+}
@@ -0,0 +1,5 @@
+package com.api.rest.biblioteca.dto;
+
+//cantidad de libros de una biblioteca: GET /api/biblioteca/{id}/stats y cada elemento de EstadisticasBibliotecas.mayores
+public record EstadisticasBiblioteca(Long id, String nombre, long cantidadLibros) {
+}
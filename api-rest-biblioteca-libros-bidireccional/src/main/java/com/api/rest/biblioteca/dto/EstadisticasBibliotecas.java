@@ -0,0 +1,10 @@
+package com.api.rest.biblioteca.dto;
+
+import java.util.List;
+
+/*
+ Respuesta de GET /api/biblioteca/stats: totales de bibliotecas y libros, y las bibliotecas con mas libros
+ (de mayor a menor).
+ */
+public record EstadisticasBibliotecas(long bibliotecas, long libros, List<EstadisticasBiblioteca> mayores) {
+}
@@ -0,0 +1,9 @@
+package com.api.rest.biblioteca.dto;
+
+/*
+ Vista de solo lectura de un libro, para las respuestas de los GET.
+ Los repositorios la arman directamente en la consulta (select new ...), por lo que Hibernate no crea
+ entidades ni las registra en el contexto de persistencia.
+ */
+public record LibroResumen(Long id, String nombre, Long bibliotecaId) {
+}
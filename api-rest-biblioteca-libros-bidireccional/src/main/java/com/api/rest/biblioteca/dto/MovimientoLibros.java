@@ -0,0 +1,10 @@
+package com.api.rest.biblioteca.dto;
+
+import java.util.List;
+
+/*
+ Cuerpo de POST /api/biblioteca/{destino}/libros/move: los libros a mover se indican con sus ids o con la
+ biblioteca en la que estan ahora (desde), que mueve todos sus libros. Se debe enviar uno de los dos.
+ */
+public record MovimientoLibros(List<Long> ids, Long desde) {
+}
@@ -0,0 +1,52 @@
+package com.api.rest.biblioteca.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/*
+ Una pagina de la paginacion por cursor (keyset).
+ contenido: los elementos de la pagina, ordenados por id
+ siguiente: cursor para pedir la pagina siguiente (?after=<siguiente>), o null si es la ultima
+ total: cantidad total de elementos; solo se calcula si se pide con ?total=true
+
+ El cursor es el ultimo id de la pagina codificado en Base64, para que el cliente lo trate como un valor
+ opaco y se pueda cambiar su contenido sin romper a los clientes.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PaginaCursor<T>(List<T> contenido, String siguiente, Long total) {
+
+    private static final Base64.Encoder CODIFICADOR = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODIFICADOR = Base64.getUrlDecoder();
+
+    /*
+     Arma la pagina a partir de los elementos leidos. El repositorio debe leer un elemento mas que el tamaño
+     pedido: si ese elemento existe hay una pagina siguiente, y se descarta de la respuesta.
+     */
+    public static <T> PaginaCursor<T> de(List<T> leidos, int tamano, Function<T, Long> id, Long total) {
+        if (leidos.size() <= tamano) {
+            return new PaginaCursor<>(leidos, null, total);
+        }
+        List<T> contenido = leidos.subList(0, tamano);
+        return new PaginaCursor<>(contenido, codificar(id.apply(contenido.get(tamano - 1))), total);
+    }
+
+    public static String codificar(Long id) {
+        return CODIFICADOR.encodeToString(id.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /*
+     Devuelve el id guardado en el cursor, o Long.MIN_VALUE si el cursor esta vacio (primera pagina).
+     Si el cursor no es valido lanza IllegalArgumentException.
+     */
+    public static Long decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return Long.MIN_VALUE;
+        }
+        return Long.valueOf(new String(DECODIFICADOR.decode(cursor), StandardCharsets.US_ASCII));
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.api.rest.biblioteca.dto;
+
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/*
+ Modificacion parcial de una biblioteca (PATCH /api/biblioteca/{id}, JSON Merge Patch). A diferencia del PUT,
+ no recibe los libros: para cambiarlos de biblioteca estan PATCH /api/libros/{id} y el movimiento en lote.
+ nombre: nuevo nombre, o null si no estaba en el parche
+ version: version de la biblioteca que el cliente leyo; si ya no es la actual, el parche se rechaza
+ */
+public record ParcheBiblioteca(String nombre, Long version) {
+
+    private static final Set<String> CAMPOS = Set.of("nombre", "version");
+
+    //lanza IllegalArgumentException si el parche no es valido (ver ParcheLibro.leer)
+    public static ParcheBiblioteca leer(JsonNode parche) {
+        ParcheLibro.validarCampos(parche, CAMPOS);
+        return new ParcheBiblioteca(ParcheLibro.texto(parche, "nombre"), ParcheLibro.numero(parche, "version"));
+    }
+
+}
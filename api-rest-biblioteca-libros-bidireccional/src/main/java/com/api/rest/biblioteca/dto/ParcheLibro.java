@@ -0,0 +1,75 @@
+package com.api.rest.biblioteca.dto;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/*
+ Modificacion parcial de un libro (PATCH /api/libros/{id}, JSON Merge Patch): solo los campos presentes en
+ el JSON se modifican, los que son null en este objeto no estaban en el parche.
+ nombre: nuevo nombre
+ bibliotecaId: biblioteca a la que se mueve el libro ({"biblioteca": {"id": 2}})
+ version: version del libro que el cliente leyo; si ya no es la actual, el parche se rechaza
+ */
+public record ParcheLibro(String nombre, Long bibliotecaId, Long version) {
+
+    private static final Set<String> CAMPOS = Set.of("nombre", "biblioteca", "version");
+
+    /*
+     Lee el parche. Lanza IllegalArgumentException si no es un objeto, si tiene campos que no se pueden
+     modificar o si quita (con null) un campo obligatorio.
+     */
+    public static ParcheLibro leer(JsonNode parche) {
+        validarCampos(parche, CAMPOS);
+        return new ParcheLibro(texto(parche, "nombre"), biblioteca(parche), numero(parche, "version"));
+    }
+
+    //el id de {"biblioteca": {"id": 2}}; el libro no puede quedar sin biblioteca
+    private static Long biblioteca(JsonNode parche) {
+        JsonNode biblioteca = parche.get("biblioteca");
+        if (biblioteca == null) {
+            return null;
+        }
+        Long id = biblioteca.isObject() ? numero(biblioteca, "id") : null;
+        if (id == null) {
+            throw new IllegalArgumentException("el campo biblioteca debe tener el id de una biblioteca");
+        }
+        return id;
+    }
+
+    static void validarCampos(JsonNode parche, Set<String> campos) {
+        if (parche == null || !parche.isObject()) {
+            throw new IllegalArgumentException("el parche debe ser un objeto JSON");
+        }
+        for (Iterator<String> nombres = parche.fieldNames(); nombres.hasNext();) {
+            String nombre = nombres.next();
+            if (!campos.contains(nombre)) {
+                throw new IllegalArgumentException("el campo " + nombre + " no se puede modificar");
+            }
+        }
+    }
+
+    static String texto(JsonNode parche, String campo) {
+        JsonNode valor = parche.get(campo);
+        if (valor == null) {
+            return null;
+        }
+        if (!valor.isTextual() || valor.asText().isBlank()) {
+            throw new IllegalArgumentException("el campo " + campo + " debe ser un texto");
+        }
+        return valor.asText();
+    }
+
+    static Long numero(JsonNode parche, String campo) {
+        JsonNode valor = parche.get(campo);
+        if (valor == null) {
+            return null;
+        }
+        if (!valor.isIntegralNumber()) {
+            throw new IllegalArgumentException("el campo " + campo + " debe ser un numero entero");
+        }
+        return valor.asLong();
+    }
+
+}
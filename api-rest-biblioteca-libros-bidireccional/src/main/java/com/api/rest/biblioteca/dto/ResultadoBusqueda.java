@@ -0,0 +1,13 @@
+package com.api.rest.biblioteca.dto;
+
+/*
+ Un libro encontrado por GET /api/libros/search, con su puntaje: los resultados se ordenan de mayor a menor
+ puntaje. El puntaje solo sirve para comparar los resultados de una misma busqueda.
+ */
+public record ResultadoBusqueda(Long id, String nombre, Long bibliotecaId, double puntaje) {
+
+    public static ResultadoBusqueda de(LibroResumen libro, double puntaje) {
+        return new ResultadoBusqueda(libro.id(), libro.nombre(), libro.bibliotecaId(), puntaje);
+    }
+
+}
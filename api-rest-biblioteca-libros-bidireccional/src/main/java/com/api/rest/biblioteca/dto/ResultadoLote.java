@@ -0,0 +1,12 @@
+package com.api.rest.biblioteca.dto;
+
+import java.util.List;
+
+/*
+ Resultado de una carga masiva de libros.
+ recibidos: cantidad de libros leidos de la solicitud
+ guardados: cantidad de libros que se insertaron en la base de datos
+ errores: detalle de cada libro rechazado
+ */
+public record ResultadoLote(int recibidos, int guardados, List<ErrorLote> errores) {
+}
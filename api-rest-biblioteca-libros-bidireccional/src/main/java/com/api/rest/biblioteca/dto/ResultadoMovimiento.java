@@ -0,0 +1,9 @@
+package com.api.rest.biblioteca.dto;
+
+/*
+ Resultado de un movimiento de libros en lote.
+ destino: biblioteca a la que se movieron los libros
+ movidos: cantidad de libros que cambiaron de biblioteca (no cuenta los ids que no existen ni los que ya estaban en el destino)
+ */
+public record ResultadoMovimiento(Long destino, long movidos) {
+}
@@ -0,0 +1,16 @@
+package com.api.rest.biblioteca.dto;
+
+/*
+ Lo necesario para saber si cambio la respuesta de GET /api/biblioteca/{id} (la biblioteca con sus libros), sin
+ leer los libros: la version de la biblioteca, que cambia cuando se modifica la biblioteca, y la de sus libros
+ (Biblioteca.versionLibros), que cambia cuando se agrega, quita, mueve o modifica alguno de ellos. Las dos solo
+ aumentan, asi que el par no se repite.
+ */
+public record VersionBiblioteca(Long version, long versionLibros) {
+
+    //ETag fuerte: entre comillas, sin el prefijo W/
+    public String etag() {
+        return "\"%d.%d\"".formatted(version, versionLibros);
+    }
+
+}
@@ -10,7 +10,14 @@ Proporcionada por Lombok, genera automáticamente métodos como getters, setters
 Indica que esta clase es una entidad JPA, lo que significa que se puede mapear a una tabla en la base de datos.
 
 @Table(name = "biblioteca")
-Especifica el nombre de la tabla en la base de datos que se asociará con esta entidad.
+Especifica el nombre de la tabla en la base de datos que se asociará con esta entidad. El indice sobre cantidad_libros permite obtener las bibliotecas con mas libros sin recorrer la tabla.
+
+@DynamicUpdate
+Al modificar una biblioteca, el UPDATE incluye solo las columnas que cambiaron: un PATCH del nombre no escribe las demas columnas.
+
+@Cache
+Con el perfil "cache" las bibliotecas se guardan en la region "biblioteca" de la cache de segundo nivel, y los ids de sus libros
+en la region "biblioteca-libros". Sin el perfil la anotacion no tiene efecto.
 
 3. Atributos de la entidad
 @Id
@@ -27,8 +34,39 @@ Relación: Esto indica que una Biblioteca puede tener muchos Libro.
 mappedBy: El atributo mappedBy especifica que el lado propietario de la relación es la entidad Libro, que tiene la propiedad biblioteca. Esto es necesario para que JPA entienda cómo se mapea la relación.
 cascade = CascadeType.ALL: Esto significa que cualquier operación (persistir, eliminar, etc.) que se realice en una Biblioteca también se aplicará a los Libro asociados. Por ejemplo, si eliminas una biblioteca, todos los libros asociados a esa biblioteca también se eliminarán.
 
+@Column(name = "cantidad_libros", updatable = false)
+private long cantidadLibros;
+Contador de libros de la biblioteca, que se usa para las estadisticas cuando biblioteca.estadisticas.contador=true. Se inicializa al guardar
+la biblioteca (@PrePersist) con la cantidad de libros que trae, y despues solo lo modifica la base con consultas UPDATE (EstadisticasService),
+por eso updatable = false: al guardar una biblioteca modificada Hibernate no lo sobrescribe con el valor que tenga el objeto. No tiene setter:
+el valor que venga en el JSON de una solicitud se ignora.
+
+@Version
+private Long version;
+Bloqueo optimista: cada UPDATE incrementa la version y solo modifica la fila si sigue teniendo la version que se leyo. Si otra
+solicitud modifico la biblioteca antes, la modificacion se rechaza con HTTP 409 (Conflict) en lugar de pisar el cambio. Los
+cambios de sus libros no incrementan la version, porque no los hace un usuario sobre la biblioteca.
+
+@Column(name = "version_libros", insertable = false, updatable = false)
+private long versionLibros;
+Se incrementa cada vez que se agrega, quita, mueve o modifica alguno de sus libros (EstadisticasService), con un UPDATE de la
+base y no desde la entidad, como cantidadLibros. Junto con version forma el ETag de GET /api/biblioteca/{id} (VersionBiblioteca).
+No es @Version: agregar un libro no hace fallar la modificacion de la biblioteca que un usuario tenga en curso. No tiene getter:
+el valor de la entidad (por ejemplo, el de la cache de segundo nivel) puede estar atrasado, solo se lee con findVersionById.
+
 private Set<Libro> libros = new HashSet<>();
 Este atributo mantiene un conjunto de libros que pertenecen a la biblioteca. Se utiliza un HashSet para evitar duplicados y para permitir un acceso eficiente.
+
+@Column(updatable = false, length = 36)
+private String codigo;
+UUID de la biblioteca, como el de Libro: se asigna la primera vez que se lee o al guardar la biblioteca, no cambia despues, y
+las filas insertadas sin Hibernate lo reciben de la base. No se incluye en el JSON: al reemplazar una biblioteca con PUT, el
+controlador le copia el codigo guardado (tambien a sus libros).
+
+4. equals, hashCode y toString
+equals y hashCode comparan por codigo: el valor no cambia cuando la base de datos asigna el id al guardar, y a diferencia de un
+hashCode igual para todas las bibliotecas, un HashSet de bibliotecas reparte sus elementos. toString no incluye los libros, para no
+cargar la coleccion ni recorrer el grafo de objetos.
  */
 
 
@@ -38,20 +76,37 @@ package com.api.rest.biblioteca.entities;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+
+import com.api.rest.biblioteca.services.LecturasCompartidasListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotNull;
 //import lombok.Data;
 
 //@Data
 @Entity
-@Table(name = "biblioteca")
+@DynamicUpdate
+@EntityListeners(LecturasCompartidasListener.class) //olvida las lecturas en curso de la biblioteca (LecturasCompartidas)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "biblioteca")
+@Table(name = "biblioteca", indexes = @Index(name = "idx_biblioteca_cantidad_libros", columnList = "cantidad_libros"))
 public class Biblioteca {
     
     @Id
@@ -61,7 +116,25 @@ public class Biblioteca {
     @NotNull
     private String nombre;
 
+    @Column(name = "cantidad_libros", updatable = false)
+    private long cantidadLibros;
+
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0") //las filas insertadas sin Hibernate (importaciones, scripts) empiezan en la version 0
+    private Long version;
+
+    @Column(name = "version_libros", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private long versionLibros;
+
+    @Column(nullable = false, updatable = false, length = 36)
+    @ColumnDefault("(uuid())") //las filas insertadas sin Hibernate reciben un codigo de la base
+    @JsonIgnore
+    private String codigo;
+
     @OneToMany(mappedBy = "biblioteca", cascade = CascadeType.ALL) //si elimino una biblioteca, se eliminan sus libros
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "biblioteca-libros")
     private Set<Libro> libros = new HashSet<>(); //set implica que no hay duplicados
 
     public Long getId() {
@@ -80,6 +153,35 @@ public class Biblioteca {
         this.nombre = nombre;
     }
 
+    public long getCantidadLibros() {
+        return cantidadLibros;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public String getCodigo() {
+        if (codigo == null) {
+            codigo = UUID.randomUUID().toString();
+        }
+        return codigo;
+    }
+
+    public void setCodigo(String codigo) {
+        this.codigo = codigo;
+    }
+
+    @PrePersist
+    void contarLibros() {
+        cantidadLibros = libros.size();
+        getCodigo(); //una biblioteca que nunca se comparo recibe su codigo al guardarse
+    }
+
     public Set<Libro> getLibros() {
         return libros;
     }
@@ -91,4 +193,26 @@ public class Biblioteca {
         }
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        //instanceof (y no getClass) para que un proxy de Hibernate sea igual a la entidad que representa
+        if (!(o instanceof Biblioteca otra)) {
+            return false;
+        }
+        return getCodigo().equals(otra.getCodigo());
+    }
+
+    @Override
+    public int hashCode() {
+        return getCodigo().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Biblioteca(id=" + id + ", nombre=" + nombre + ")";
+    }
+
 }
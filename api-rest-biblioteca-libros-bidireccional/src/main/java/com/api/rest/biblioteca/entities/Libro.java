@@ -5,15 +5,36 @@ JSON y Jakarta Persistence para la gestión de entidades.
 
 Anotaciones:
 
-@Data: Proporcionada por Lombok, genera automáticamente métodos como getters, setters, toString, equals, y hashCode.
+@Getter y @Setter: Proporcionadas por Lombok, generan automáticamente los getters y setters.
+
+equals y hashCode: como en Biblioteca, comparan por codigo, una clave que el libro recibe antes de entrar en un conjunto y que no
+cambia al guardarlo (el id recien existe al guardar, y un hashCode igual para todos los libros convertiria el HashSet de
+Biblioteca.libros en una lista). No dependen del nombre, que se puede modificar con PUT o PATCH mientras el libro esta en el HashSet,
+ni de la relacion biblioteca: con @Data, al agregar un libro al HashSet se calcularia el hashCode del proxy de la biblioteca, lo que
+puede disparar una consulta y recorrer todo el grafo. Dos libros nuevos solo son iguales si son el mismo objeto.
+
+codigo: UUID del libro. Se asigna la primera vez que se lee (getCodigo, que usan equals y hashCode) o al guardar el libro, y no se
+modifica despues (updatable = false). Un libro leido de la base trae el suyo, sin generar uno. Las filas insertadas sin Hibernate
+reciben uno de la base (@ColumnDefault). No se incluye en el JSON: al reemplazar un libro con PUT, el controlador le copia el codigo
+guardado, para que save no lo cambie en la entidad administrada ni en la cache de segundo nivel.
+
+@ToString: genera toString sin la relacion biblioteca, por el mismo motivo.
 
 @Entity: Indica que esta clase es una entidad JPA que se mapea a una tabla en la base de datos.
 
+@EntityListeners(IndiceLibrosListener.class): Cada libro que se guarda, modifica o elimina actualiza el indice de busqueda (IndiceLibros).
+LecturasCompartidasListener olvida las lecturas en curso del libro (LecturasCompartidas).
+
 @Table(name = "libros"): Especifica el nombre de la tabla en la base de datos.
 
+@Cache: Con el perfil "cache" los libros se guardan en la region "libro" de la cache de segundo nivel. READ_WRITE mantiene la cache
+coherente con las escrituras que hace Hibernate (save, delete). Sin el perfil la anotacion no tiene efecto.
+
 @Id: Indica que el campo id es la clave primaria.
 
-@GeneratedValue(strategy = GenerationType.IDENTITY): Define que el valor de id se generará automáticamente (usualmente por la base de datos).
+@GeneratedValue(strategy = GenerationType.SEQUENCE): Define que el valor de id se toma de la secuencia libros_seq. Con allocationSize = 50 Hibernate reserva
+50 ids por cada consulta a la secuencia (optimizador pooled), lo que permite agrupar los INSERT en lotes JDBC. Con IDENTITY esto no es posible, porque
+Hibernate necesita ejecutar cada INSERT para conocer el id. En MySQL, que no tiene secuencias, Hibernate emula la secuencia con la tabla libros_seq.
 
 @NotNull: Indica que el campo nombre no puede ser nulo.
 
@@ -31,36 +52,105 @@ explícitamente a ellos.
 
 package com.api.rest.biblioteca.entities;
 
+import java.util.UUID;
+
+import com.api.rest.biblioteca.services.IndiceLibrosListener;
+import com.api.rest.biblioteca.services.LecturasCompartidasListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonProperty.Access;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotNull;
-import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
-@Data
+@Getter
+@Setter
+@ToString
 @Entity
-@Table(name = "libros", uniqueConstraints = {@UniqueConstraint(columnNames = {"nombre"})}) //el nombre del libro es unico y no se puede repetir
+@DynamicUpdate //el UPDATE incluye solo las columnas que cambiaron (por ejemplo, solo el nombre en un PATCH)
+@EntityListeners({IndiceLibrosListener.class, LecturasCompartidasListener.class})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "libro")
+@Table(name = "libros", uniqueConstraints = {@UniqueConstraint(name = "uk_libros_nombre", columnNames = {"nombre"})}) //el nombre del libro es unico y no se puede repetir
 public class Libro {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "libros_seq")
+    @SequenceGenerator(name = "libros_seq", sequenceName = "libros_seq", allocationSize = 50) //reserva ids de a 50 para poder insertar en lotes
     private Long id;
 
     @NotNull
     private String nombre;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false) //muchos libros pertenecen a una biblioteca
-    @JoinColumn(name = "biblioteca_id")
+    @JoinColumn(name = "biblioteca_id", foreignKey = @ForeignKey(name = "fk_libros_biblioteca"))
     @JsonProperty(access = Access.WRITE_ONLY)
+    @ToString.Exclude
     private Biblioteca biblioteca;
 
+    /*
+     Bloqueo optimista: cada UPDATE incrementa la version y solo modifica la fila si sigue teniendo la version
+     que se leyo (where version = ?). Si otra solicitud la modifico antes, Hibernate lanza una excepcion y se
+     responde HTTP 409 (Conflict) en lugar de pisar el cambio anterior.
+     */
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0") //las filas insertadas sin Hibernate (importaciones, scripts) empiezan en la version 0
+    private Long version;
+
+    @Column(nullable = false, updatable = false, length = 36)
+    @ColumnDefault("(uuid())") //las filas insertadas sin Hibernate reciben un codigo de la base
+    @JsonIgnore
+    private String codigo;
+
+    public String getCodigo() {
+        if (codigo == null) {
+            codigo = UUID.randomUUID().toString();
+        }
+        return codigo;
+    }
+
+    @PrePersist
+    void asignarCodigo() {
+        getCodigo(); //un libro que nunca se comparo recibe su codigo al guardarse
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        //instanceof (y no getClass) para que un proxy de Hibernate sea igual a la entidad que representa
+        if (!(o instanceof Libro otro)) {
+            return false;
+        }
+        return getCodigo().equals(otro.getCodigo());
+    }
+
+    @Override
+    public int hashCode() {
+        return getCodigo().hashCode();
+    }
+
 }
@@ -1,13 +1,125 @@
 package com.api.rest.biblioteca.repositories;
 
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.api.rest.biblioteca.dto.BibliotecaResumen;
+import com.api.rest.biblioteca.dto.EstadisticasBiblioteca;
+import com.api.rest.biblioteca.dto.VersionBiblioteca;
 import com.api.rest.biblioteca.entities.Biblioteca;
 
+import jakarta.persistence.QueryHint;
+
+/*
+ Las consultas de este repositorio se ejecutan en transacciones de solo lectura (readOnly = true).
+ Los metodos que escriben (save, delete, ...) tienen su propia transaccion de escritura.
+ */
+@Transactional(readOnly = true)
 public interface BibliotecaRepository extends JpaRepository<Biblioteca, Long>{
 
     void save(Optional<Biblioteca> bibliotecaOptional);
+
+    //devuelve cuales de los ids recibidos corresponden a bibliotecas existentes, sin cargar las entidades
+    @Query("select b.id from Biblioteca b where b.id in :ids")
+    List<Long> findIdsExistentes(@Param("ids") Collection<Long> ids);
+
+    /*
+     Lecturas de los GET: arman BibliotecaResumen directamente en la consulta, con la cantidad de libros
+     calculada por la base (GROUP BY), sin crear entidades ni cargar la coleccion de libros. Los libros,
+     cuando se piden, se leen aparte con LibroRepository.findResumenesByBibliotecaIdIn: una sola consulta
+     para todas las bibliotecas de la pagina.
+     Con el perfil "cache" los resultados quedan en la cache de consultas.
+     */
+    @Query(value = "select new com.api.rest.biblioteca.dto.BibliotecaResumen(b.id, b.nombre, count(l)) from Biblioteca b left join b.libros l group by b.id, b.nombre",
+           countQuery = "select count(b) from Biblioteca b")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Page<BibliotecaResumen> findResumenes(Pageable pageable);
+
+    @Query("select new com.api.rest.biblioteca.dto.BibliotecaResumen(b.id, b.nombre, count(l)) from Biblioteca b left join b.libros l where b.id = :id group by b.id, b.nombre")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Optional<BibliotecaResumen> findResumenById(@Param("id") Long id);
+
+    /*
+     Para el ETag de GET /api/biblioteca/{id}: la version de la biblioteca y la de sus libros (ver VersionBiblioteca).
+     No usa la cache de consultas: incrementarVersionesLibros no invalida las consultas sobre la tabla biblioteca.
+     */
+    @Query("select new com.api.rest.biblioteca.dto.VersionBiblioteca(b.version, b.versionLibros) from Biblioteca b where b.id = :id")
+    Optional<VersionBiblioteca> findVersionById(@Param("id") Long id);
+
+    //paginacion por cursor: las siguientes bibliotecas despues del id recibido, sin OFFSET ni total
+    @Query("select new com.api.rest.biblioteca.dto.BibliotecaResumen(b.id, b.nombre, count(l)) from Biblioteca b left join b.libros l where b.id > :id group by b.id, b.nombre order by b.id")
+    List<BibliotecaResumen> findResumenesDespuesDe(@Param("id") Long id, Limit limit);
+
+    /*
+     Estadisticas (EstadisticasService). Las cantidades de libros se calculan en la base con GROUP BY,
+     o se leen de la columna cantidad_libros cuando biblioteca.estadisticas.contador=true.
+     */
+    @Query("select new com.api.rest.biblioteca.dto.EstadisticasBiblioteca(b.id, b.nombre, count(l)) from Biblioteca b left join b.libros l where b.id = :id group by b.id, b.nombre")
+    Optional<EstadisticasBiblioteca> findEstadisticasById(@Param("id") Long id);
+
+    //las bibliotecas con mas libros; a igual cantidad, la de menor id
+    @Query("select new com.api.rest.biblioteca.dto.EstadisticasBiblioteca(b.id, b.nombre, count(l)) from Biblioteca b left join b.libros l group by b.id, b.nombre order by count(l) desc, b.id")
+    List<EstadisticasBiblioteca> findMayores(Limit limit);
+
+    @Query("select new com.api.rest.biblioteca.dto.EstadisticasBiblioteca(b.id, b.nombre, b.cantidadLibros) from Biblioteca b where b.id = :id")
+    Optional<EstadisticasBiblioteca> findEstadisticasPorContadorById(@Param("id") Long id);
+
+    //usa el indice sobre cantidad_libros: no recorre la tabla de libros
+    @Query("select new com.api.rest.biblioteca.dto.EstadisticasBiblioteca(b.id, b.nombre, b.cantidadLibros) from Biblioteca b order by b.cantidadLibros desc, b.id")
+    List<EstadisticasBiblioteca> findMayoresPorContador(Limit limit);
+
+    @Query("select coalesce(sum(b.cantidadLibros), 0) from Biblioteca b")
+    long sumCantidadLibros();
+
+    /*
+     Suma (o resta, con una cantidad negativa) libros al contador de una biblioteca. La suma la hace la base
+     sobre el valor actual de la fila, asi dos transacciones que agregan libros a la vez no pierden ninguno.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Biblioteca b set b.cantidadLibros = b.cantidadLibros + :cantidad where b.id = :id")
+    int sumarLibros(@Param("id") Long id, @Param("cantidad") long cantidad);
+
+    /*
+     Incrementa la version de los libros de las bibliotecas (Biblioteca.versionLibros), para que cambie el ETag de
+     GET /api/biblioteca/{id}. La llama EstadisticasService en la transaccion que modifica los libros.
+     Es SQL nativo sincronizado solo con su propio espacio de consultas, y no con la tabla biblioteca: Hibernate no
+     elimina de la cache de segundo nivel las bibliotecas ni las consultas cacheadas sobre la tabla, como con un
+     UPDATE de JPQL. Ninguna de ellas lee version_libros.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "update biblioteca set version_libros = version_libros + 1 where id in :ids", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "biblioteca_version_libros"))
+    int incrementarVersionesLibros(@Param("ids") Collection<Long> ids);
+
+    //vuelve a calcular el contador de todas las bibliotecas a partir de la tabla de libros
+    @Modifying
+    @Transactional
+    @Query("update Biblioteca b set b.cantidadLibros = (select count(l) from Libro l where l.biblioteca = b)")
+    int recontarLibros();
+
+    /*
+     Elimina la biblioteca con una sola sentencia, sin cargarla ni recorrer sus libros (que ya se eliminaron
+     con LibroRepository.eliminarPorIds). Hibernate invalida la region de bibliotecas de la cache de segundo nivel.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from Biblioteca b where b.id = :id")
+    int eliminarPorId(@Param("id") Long id);
     
 }
@@ -1,9 +1,140 @@
 package com.api.rest.biblioteca.repositories;
 
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.api.rest.biblioteca.dto.LibroResumen;
 import com.api.rest.biblioteca.entities.Libro;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+/*
+ Las consultas de este repositorio se ejecutan en transacciones de solo lectura (readOnly = true):
+ Hibernate no guarda copias de las entidades para detectar cambios ni hace flush al terminar.
+ Los metodos que escriben (save, delete, ...) tienen su propia transaccion de escritura.
+ */
+@Transactional(readOnly = true)
 public interface LibroRepository extends JpaRepository<Libro, Long>{
+
+    /*
+     Lee el libro bloqueando su fila hasta el final de la transaccion (SELECT ... FOR UPDATE). Lo usan las
+     modificaciones y bajas de LibroController cuando se mantiene el contador de libros: dos solicitudes sobre el
+     mismo libro se ejecutan una despues de la otra, y la segunda ve la biblioteca que dejo la primera, asi el
+     contador no se desfasa.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from Libro l where l.id = :id")
+    Optional<Libro> findByIdParaActualizar(@Param("id") Long id);
+
+    //devuelve cuales de los nombres recibidos ya estan usados por algun libro
+    @Query("select l.nombre from Libro l where l.nombre in :nombres")
+    List<String> findNombresExistentes(@Param("nombres") Collection<String> nombres);
+
+    /*
+     Lecturas de los GET: arman LibroResumen directamente en la consulta, sin crear entidades.
+     Con el perfil "cache" los resultados quedan en la cache de consultas.
+     */
+    @Query(value = "select new com.api.rest.biblioteca.dto.LibroResumen(l.id, l.nombre, l.biblioteca.id) from Libro l",
+           countQuery = "select count(l) from Libro l")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Page<LibroResumen> findResumenes(Pageable pageable);
+
+    @Query("select new com.api.rest.biblioteca.dto.LibroResumen(l.id, l.nombre, l.biblioteca.id) from Libro l where l.id = :id")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Optional<LibroResumen> findResumenById(@Param("id") Long id);
+
+    //solo la version del libro, para el ETag de GET /api/libros/{id}: responder 304 no necesita leer el libro
+    @Query("select l.version from Libro l where l.id = :id")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    //los libros de varias bibliotecas, en una sola consulta
+    @Query("select new com.api.rest.biblioteca.dto.LibroResumen(l.id, l.nombre, l.biblioteca.id) from Libro l where l.biblioteca.id in :bibliotecaIds order by l.id")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<LibroResumen> findResumenesByBibliotecaIdIn(@Param("bibliotecaIds") Collection<Long> bibliotecaIds);
+
+    /*
+     Paginacion por cursor: los siguientes libros despues del id recibido. A diferencia de findResumenes no usa
+     OFFSET (que obliga a la base a recorrer todas las filas anteriores) ni cuenta el total.
+     */
+    @Query("select new com.api.rest.biblioteca.dto.LibroResumen(l.id, l.nombre, l.biblioteca.id) from Libro l where l.id > :id order by l.id")
+    List<LibroResumen> findResumenesDespuesDe(@Param("id") Long id, Limit limit);
+
+    /*
+     Exportacion: recorre los libros a medida que la base los envia, de a 500 filas (fetch size), en lugar
+     de cargar el resultado completo en memoria. Los libros se cargan en modo solo lectura (Hibernate no
+     guarda una copia para detectar cambios) y no pasan por la cache de segundo nivel.
+     Se debe usar dentro de una transaccion, y el Stream se debe cerrar al terminar.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select l from Libro l order by l.id")
+    Stream<Libro> streamAll();
+
+    //igual que streamAll, pero solo los libros de una biblioteca
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select l from Libro l where l.biblioteca.id = :bibliotecaId order by l.id")
+    Stream<Libro> streamByBibliotecaId(@Param("bibliotecaId") Long bibliotecaId);
+
+    //todos los libros como LibroResumen, de a 500 filas, para armar el indice de busqueda (IndiceLibros)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.api.rest.biblioteca.dto.LibroResumen(l.id, l.nombre, l.biblioteca.id) from Libro l")
+    Stream<LibroResumen> streamResumenes();
+
+    /*
+     Eliminacion de una biblioteca por tramos (EliminacionBibliotecaService): los ids de los primeros libros
+     de la biblioteca, y un DELETE de esos libros en una sola sentencia. A diferencia de delete(entidad), no
+     carga los libros ni ejecuta un DELETE por libro. Hibernate invalida las regiones de libros (y de las
+     colecciones de libros) de la cache de segundo nivel y las consultas cacheadas sobre la tabla de libros.
+     */
+    @Query("select l.id from Libro l where l.biblioteca.id = :bibliotecaId order by l.id")
+    List<Long> findIdsByBibliotecaId(@Param("bibliotecaId") Long bibliotecaId, Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Libro l where l.id in :ids")
+    int eliminarPorIds(@Param("ids") Collection<Long> ids);
+
+    /*
+     Movimiento de libros en lote (MovimientoLibrosService): lee los libros bloqueando sus filas, como
+     findByIdParaActualizar, para saber de que biblioteca sale cada uno y ajustar los contadores sin que otra
+     solicitud los mueva mientras tanto. Despues el UPDATE los mueve en una sola sentencia e incrementa su version
+     (asi un PATCH que leyo el libro antes del movimiento se rechaza); como los DELETE
+     masivos, invalida las regiones de libros y de colecciones de libros de la cache de segundo nivel.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select new com.api.rest.biblioteca.dto.LibroResumen(l.id, l.nombre, l.biblioteca.id) from Libro l where l.id in :ids")
+    List<LibroResumen> findResumenesParaMover(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("update Libro l set l.biblioteca.id = :destinoId, l.version = l.version + 1 where l.id in :ids and l.biblioteca.id <> :destinoId")
+    int moverPorIds(@Param("ids") Collection<Long> ids, @Param("destinoId") Long destinoId);
     
 }
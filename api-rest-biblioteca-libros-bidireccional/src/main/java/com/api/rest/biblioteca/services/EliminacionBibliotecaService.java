@@ -0,0 +1,157 @@
+package com.api.rest.biblioteca.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.api.rest.biblioteca.dto.EliminacionBiblioteca;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/*
+ Eliminacion de una biblioteca con todos sus libros.
+
+ bibliotecaRepository.delete(biblioteca) aplica el cascade de Biblioteca.libros: Hibernate carga cada libro
+ y ejecuta un DELETE por libro, todo en una transaccion. Aca los libros se eliminan por tramos de
+ biblioteca.eliminacion.tamano: cada tramo lee los ids de los libros y los elimina con un solo DELETE, en su
+ propia transaccion, asi ninguna transaccion bloquea demasiadas filas ni crece con la cantidad de libros. El
+ ultimo tramo (el que encuentra menos libros que el tamano) elimina tambien la biblioteca.
+
+ Como los DELETE no pasan por Hibernate entidad por entidad, en cada tramo se actualizan aparte:
+ - el indice de busqueda (IndiceLibros) y las lecturas en curso (LecturasCompartidas), al confirmar la transaccion;
+ - el contador de libros de la biblioteca (EstadisticasService), antes de eliminar, como en las demas bajas;
+ - la cache de segundo nivel la invalida Hibernate al ejecutar los DELETE masivos.
+
+ La eliminacion puede ejecutarse en la solicitud (eliminar) o en segundo plano (iniciar); el estado de las ultimas
+ eliminaciones en segundo plano se consulta con estado. Las de segundo plano usan su propio ejecutor, con
+ biblioteca.eliminacion.concurrentes hilos: cada una ocupa una conexion del pool mientras dura, por fuera de los
+ limites de concurrencia de las solicitudes, y LimitesConfig las descuenta del pool. Las que no entran esperan
+ su turno en la cola del ejecutor, sin ocupar conexiones.
+ */
+@Service
+public class EliminacionBibliotecaService {
+
+    private static final Logger log = LoggerFactory.getLogger(EliminacionBibliotecaService.class);
+
+    //cantidad de eliminaciones en segundo plano que se recuerdan; las mas viejas se olvidan
+    private static final int ELIMINACIONES_RECORDADAS = 1000;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private EstadisticasService estadisticasService;
+
+    @Autowired
+    private IndiceLibros indiceLibros;
+
+    @Autowired
+    private LecturasCompartidas lecturasCompartidas;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${biblioteca.eliminacion.tamano:1000}")
+    private int tamano;
+
+    @Value("${biblioteca.eliminacion.concurrentes:1}")
+    private int concurrentes;
+
+    //no es un bean: un Executor en el contexto haria que Spring Boot no cree applicationTaskExecutor
+    private final ThreadPoolTaskExecutor ejecutor = new ThreadPoolTaskExecutor();
+
+    private final Map<String, EliminacionBiblioteca> eliminaciones = Collections.synchronizedMap(
+            new LinkedHashMap<String, EliminacionBiblioteca>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, EliminacionBiblioteca> mayor) {
+                    return size() > ELIMINACIONES_RECORDADAS;
+                }
+            });
+
+    @PostConstruct
+    void iniciarEjecutor() {
+        ejecutor.setCorePoolSize(concurrentes);
+        ejecutor.setMaxPoolSize(concurrentes);
+        ejecutor.setThreadNamePrefix("eliminacion-");
+        ejecutor.initialize();
+    }
+
+    @PreDestroy
+    void detenerEjecutor() {
+        ejecutor.shutdown();
+    }
+
+    //elimina la biblioteca y sus libros, y devuelve la cantidad de libros eliminados
+    public long eliminar(Long bibliotecaId) {
+        return eliminar(bibliotecaId, eliminados -> { });
+    }
+
+    //empieza la eliminacion en segundo plano y devuelve su estado inicial
+    public EliminacionBiblioteca iniciar(Long bibliotecaId) {
+        EliminacionBiblioteca eliminacion = new EliminacionBiblioteca(UUID.randomUUID().toString(), bibliotecaId,
+                EliminacionBiblioteca.Estado.EN_CURSO, 0, null);
+        eliminaciones.put(eliminacion.id(), eliminacion);
+
+        ejecutor.execute(() -> {
+            try {
+                eliminar(bibliotecaId, eliminados -> eliminaciones.computeIfPresent(eliminacion.id(), (id, actual) -> actual.conAvance(eliminados)));
+                eliminaciones.computeIfPresent(eliminacion.id(), (id, actual) -> actual.terminada());
+            } catch (RuntimeException e) {
+                log.warn("No se pudo eliminar la biblioteca {}", bibliotecaId, e);
+                eliminaciones.computeIfPresent(eliminacion.id(), (id, actual) -> actual.fallida(e.getMessage()));
+            }
+        });
+        return eliminacion;
+    }
+
+    public Optional<EliminacionBiblioteca> estado(String id) {
+        return Optional.ofNullable(eliminaciones.get(id));
+    }
+
+    private long eliminar(Long bibliotecaId, LongConsumer avance) {
+        long eliminados = 0;
+        boolean terminada = false;
+        while (!terminada) {
+            List<Long> ids = transactionTemplate.execute(estado -> eliminarTramo(bibliotecaId));
+            eliminados += ids.size();
+            terminada = ids.size() < tamano;
+            avance.accept(eliminados);
+        }
+        return eliminados;
+    }
+
+    //elimina hasta "tamano" libros de la biblioteca, y la biblioteca si no le quedan mas
+    private List<Long> eliminarTramo(Long bibliotecaId) {
+        List<Long> ids = libroRepository.findIdsByBibliotecaId(bibliotecaId, Limit.of(tamano));
+        if (!ids.isEmpty()) {
+            estadisticasService.librosAgregados(Map.of(bibliotecaId, (long) -ids.size()));
+            libroRepository.eliminarPorIds(ids);
+            IndiceLibrosListener.alConfirmar(() -> indiceLibros.eliminar(ids));
+        }
+        lecturasCompartidas.todoModificado();
+        if (ids.size() < tamano) {
+            bibliotecaRepository.eliminarPorId(bibliotecaId);
+        }
+        return ids;
+    }
+
+}
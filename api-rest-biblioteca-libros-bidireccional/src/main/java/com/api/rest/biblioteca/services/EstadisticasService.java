@@ -0,0 +1,121 @@
+package com.api.rest.biblioteca.services;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import com.api.rest.biblioteca.dto.EstadisticasBiblioteca;
+import com.api.rest.biblioteca.dto.EstadisticasBibliotecas;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+/*
+ Estadisticas de las bibliotecas: cantidad de libros de cada una y las que tienen mas libros.
+
+ Por defecto las cantidades se calculan en la base con GROUP BY en cada consulta, sin traer los libros
+ a memoria. Con biblioteca.estadisticas.contador=true se leen de la columna biblioteca.cantidad_libros,
+ que se mantiene al dia sumando y restando en cada alta, baja o cambio de biblioteca de un libro (el
+ ranking usa el indice sobre esa columna en lugar de recorrer la tabla de libros). Al iniciar la
+ aplicacion el contador se recalcula completo, por si hubo cambios mientras estaba desactivado.
+
+ Los mismos metodos incrementan la version de los libros (Biblioteca.versionLibros) de cada biblioteca cuyos
+ libros cambian, tambien cuando un libro se modifica sin cambiar de biblioteca (libroModificado): GET
+ /api/biblioteca/{id} devuelve los libros, y su ETag depende de esa version. El incremento no usa una
+ transaccion propia despues de confirmar: mientras espera otra conexion retiene la de la transaccion que
+ termino, y con muchas escrituras a la vez el pool se queda sin conexiones.
+
+ Estos metodos se deben llamar dentro de la transaccion que modifica los libros, asi los cambios se
+ confirman o se deshacen juntos, y antes de guardar los libros: la transaccion toma
+ primero el bloqueo de la fila de la biblioteca. Si insertara el libro antes, MySQL tomaria un bloqueo
+ compartido sobre la biblioteca (por la clave foranea) y dos altas simultaneas en la misma biblioteca se
+ bloquearian mutuamente al querer actualizar el contador o la version. Por el mismo motivo, cuando hay
+ varias bibliotecas se actualizan en orden de id. Las escrituras de libros de una misma biblioteca se
+ esperan entre si desde ese punto hasta confirmar.
+ */
+@Service
+public class EstadisticasService {
+
+    private static final Logger log = LoggerFactory.getLogger(EstadisticasService.class);
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Value("${biblioteca.estadisticas.contador:false}")
+    private boolean usarContador;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recontarAlIniciar() {
+        if (usarContador) {
+            log.info("Contador de libros recalculado para {} bibliotecas", bibliotecaRepository.recontarLibros());
+        }
+    }
+
+    /*
+     Con el contador, las modificaciones y bajas de un libro lo leen bloqueando su fila (LibroRepository.findByIdParaActualizar),
+     para restar el libro de la biblioteca en la que esta realmente. Sin el contador alcanza con el bloqueo optimista.
+     */
+    public boolean usaContador() {
+        return usarContador;
+    }
+
+    public EstadisticasBibliotecas generales(int mayores) {
+        Limit limite = Limit.of(mayores);
+        if (usarContador) {
+            return new EstadisticasBibliotecas(bibliotecaRepository.count(), bibliotecaRepository.sumCantidadLibros(),
+                    bibliotecaRepository.findMayoresPorContador(limite));
+        }
+        return new EstadisticasBibliotecas(bibliotecaRepository.count(), libroRepository.count(), bibliotecaRepository.findMayores(limite));
+    }
+
+    public Optional<EstadisticasBiblioteca> deBiblioteca(Long id) {
+        return usarContador ? bibliotecaRepository.findEstadisticasPorContadorById(id) : bibliotecaRepository.findEstadisticasById(id);
+    }
+
+    public void libroAgregado(Long bibliotecaId) {
+        librosAgregados(Map.of(bibliotecaId, 1L));
+    }
+
+    public void libroEliminado(Long bibliotecaId) {
+        librosAgregados(Map.of(bibliotecaId, -1L));
+    }
+
+    public void libroMovido(Long desde, Long hacia) {
+        if (Objects.equals(desde, hacia)) {
+            libroModificado(desde);
+        } else {
+            librosAgregados(Map.of(desde, -1L, hacia, 1L));
+        }
+    }
+
+    //un libro de la biblioteca cambio (por ejemplo, su nombre) sin cambiar la cantidad de libros
+    public void libroModificado(Long bibliotecaId) {
+        librosAgregados(Map.of(bibliotecaId, 0L));
+    }
+
+    //cantidad de libros agregados (o quitados, si es negativa) por biblioteca, con una sentencia por biblioteca
+    public void librosAgregados(Map<Long, Long> cantidadPorBiblioteca) {
+        if (usarContador) {
+            new TreeMap<>(cantidadPorBiblioteca).forEach((bibliotecaId, cantidad) -> {
+                if (cantidad != 0) {
+                    bibliotecaRepository.sumarLibros(bibliotecaId, cantidad);
+                }
+            });
+        }
+        bibliotecaRepository.incrementarVersionesLibros(new TreeSet<>(cantidadPorBiblioteca.keySet()));
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.api.rest.biblioteca.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/*
+ Exportacion del catalogo de libros en NDJSON (un objeto JSON por linea) o CSV.
+
+ Los libros se leen con un Stream del repositorio, que trae las filas de la base de a partes, y se escriben
+ en la salida a medida que llegan. Cada biblioteca.exportacion.tamano-limpieza libros se vacia el contexto
+ de persistencia, asi la memoria usada no depende de la cantidad de libros exportados.
+ */
+@Service
+public class ExportacionService {
+
+    public enum Formato {
+        NDJSON(MediaType.APPLICATION_NDJSON),
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8));
+
+        private final MediaType tipoContenido;
+
+        Formato(MediaType tipoContenido) {
+            this.tipoContenido = tipoContenido;
+        }
+
+        public MediaType getTipoContenido() {
+            return tipoContenido;
+        }
+
+        //el formato con ese nombre ("ndjson" o "csv", sin importar mayusculas), o vacio si no existe
+        public static Optional<Formato> desde(String nombre) {
+            for (Formato formato : values()) {
+                if (formato.name().equalsIgnoreCase(nombre)) {
+                    return Optional.of(formato);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transaccionLectura;
+
+    @Value("${biblioteca.exportacion.tamano-limpieza:500}")
+    private int tamanoLimpieza;
+
+    public ExportacionService(PlatformTransactionManager transactionManager) {
+        this.transaccionLectura = new TransactionTemplate(transactionManager);
+        this.transaccionLectura.setReadOnly(true);
+    }
+
+    //exporta todos los libros, o solo los de una biblioteca si bibliotecaId no es null
+    public void exportar(Long bibliotecaId, Formato formato, OutputStream salida) {
+        transaccionLectura.executeWithoutResult(estado -> {
+            try (Stream<Libro> libros = bibliotecaId == null ? libroRepository.streamAll() : libroRepository.streamByBibliotecaId(bibliotecaId)) {
+                if (formato == Formato.CSV) {
+                    escribirCsv(libros.iterator(), salida);
+                } else {
+                    escribirNdjson(libros.iterator(), salida);
+                }
+            } catch (IOException e) {
+                //normalmente el cliente cerro la conexion antes de terminar la descarga
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void escribirNdjson(Iterator<Libro> libros, OutputStream salida) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(salida);
+        json.setRootValueSeparator(null);
+
+        int escritos = 0;
+        while (libros.hasNext()) {
+            Libro libro = libros.next();
+            json.writeStartObject();
+            json.writeNumberField("id", libro.getId());
+            json.writeStringField("nombre", libro.getNombre());
+            //leer el id de la biblioteca no inicializa el proxy, no hace una consulta
+            json.writeNumberField("bibliotecaId", libro.getBiblioteca().getId());
+            json.writeEndObject();
+            json.writeRaw('\n');
+
+            limpiarCada(++escritos);
+        }
+        json.flush();
+    }
+
+    private void escribirCsv(Iterator<Libro> libros, OutputStream salida) throws IOException {
+        Writer csv = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+        csv.write("id,nombre,biblioteca_id\n");
+
+        int escritos = 0;
+        while (libros.hasNext()) {
+            Libro libro = libros.next();
+            csv.write(libro.getId().toString());
+            csv.write(',');
+            csv.write(campoCsv(libro.getNombre()));
+            csv.write(',');
+            csv.write(libro.getBiblioteca().getId().toString());
+            csv.write('\n');
+
+            limpiarCada(++escritos);
+        }
+        csv.flush();
+    }
+
+    private void limpiarCada(int escritos) {
+        if (escritos % tamanoLimpieza == 0) {
+            entityManager.clear();
+        }
+    }
+
+    //encierra el valor entre comillas si contiene separadores, comillas o saltos de linea (RFC 4180)
+    private static String campoCsv(String valor) {
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+
+}
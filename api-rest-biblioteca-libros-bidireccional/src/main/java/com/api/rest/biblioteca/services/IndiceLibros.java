@@ -0,0 +1,392 @@
+package com.api.rest.biblioteca.services;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.api.rest.biblioteca.dto.LibroResumen;
+import com.api.rest.biblioteca.dto.ResultadoBusqueda;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+/*
+ Indice invertido en memoria sobre el nombre de los libros, para GET /api/libros/search.
+
+ Cada nombre se separa en terminos (palabras en minusculas y sin acentos). Para cada termino el indice guarda
+ los ids de los libros que lo contienen, ordenados; los terminos estan en un TreeMap, asi los que empiezan
+ con un prefijo son un rango del mapa. Una busqueda solo recorre los libros de sus terminos, en lugar de
+ recorrer toda la tabla como un LIKE '%x%'.
+
+ Puntaje: cada termino de la busqueda que aparece en el nombre suma su idf (ln(1 + libros / libros con el
+ termino)), asi las palabras raras pesan mas que las comunes. El ultimo termino se completa como prefijo
+ (autocompletado), y los terminos completados suman la mitad. A igual puntaje va primero el nombre mas corto.
+
+ El indice se arma completo al iniciar la aplicacion y despues se actualiza con cada libro que se guarda,
+ modifica o elimina (IndiceLibrosListener). Las escrituras masivas con JPQL (update/delete) no pasan por
+ Hibernate: quien las use debe actualizar el indice o llamar a reconstruir.
+ */
+@Service
+public class IndiceLibros {
+
+    private static final Logger log = LoggerFactory.getLogger(IndiceLibros.class);
+
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}");
+
+    //cantidad maxima de terminos en los que se completa un prefijo
+    private static final int MAXIMO_COMPLETADOS = 64;
+
+    private static final double PESO_COMPLETADO = 0.5;
+
+    //@Lazy: el repositorio depende de Hibernate, que a su vez crea IndiceLibrosListener, que usa este indice
+    @Lazy
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Value("${biblioteca.busqueda.reconstruir-al-iniciar:true}")
+    private boolean reconstruirAlIniciar;
+
+    private final ReentrantReadWriteLock bloqueo = new ReentrantReadWriteLock();
+
+    private Contenido contenido = new Contenido();
+
+    /*
+     Cambios recibidos mientras se reconstruye el indice, para aplicarlos tambien al indice nuevo: el ultimo
+     cambio de cada libro, el libro guardado o null si se elimino. Como solo queda el ultimo, el orden en que se
+     aplican no importa (un libro guardado y despues eliminado queda eliminado).
+     */
+    private Map<Long, LibroResumen> cambiosDuranteReconstruccion;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reconstruirAlIniciar() {
+        if (reconstruirAlIniciar) {
+            reconstruir();
+        }
+    }
+
+    /*
+     Arma el indice con todos los libros de la base. Mientras tanto las busquedas usan el indice anterior, y
+     los cambios que llegan se aplican a los dos.
+     La transaccion no es de solo lectura para que, con replicas (DataSourceReplicas), lea de la base principal:
+     el indice se arma una vez y despues solo recibe los cambios, asi que no puede partir de una replica atrasada.
+     */
+    @Transactional
+    public void reconstruir() {
+        try (Stream<LibroResumen> libros = libroRepository.streamResumenes()) {
+            reconstruir(libros);
+        }
+    }
+
+    void reconstruir(Stream<LibroResumen> libros) {
+        bloqueo.writeLock().lock();
+        try {
+            cambiosDuranteReconstruccion = new HashMap<>();
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+
+        Contenido nuevo = new Contenido();
+        try {
+            libros.forEach(nuevo::guardar);
+        } finally {
+            bloqueo.writeLock().lock();
+            try {
+                cambiosDuranteReconstruccion.forEach((id, libro) -> {
+                    if (libro == null) {
+                        nuevo.eliminar(id);
+                    } else {
+                        nuevo.guardar(libro);
+                    }
+                });
+                contenido = nuevo;
+                cambiosDuranteReconstruccion = null;
+            } finally {
+                bloqueo.writeLock().unlock();
+            }
+        }
+        log.info("Indice de busqueda reconstruido: {} libros, {} terminos", nuevo.libros.size(), nuevo.terminos.size());
+    }
+
+    //agrega el libro al indice, o lo reemplaza si ya estaba (por ejemplo porque cambio el nombre)
+    public void guardar(LibroResumen libro) {
+        bloqueo.writeLock().lock();
+        try {
+            contenido.guardar(libro);
+            if (cambiosDuranteReconstruccion != null) {
+                cambiosDuranteReconstruccion.put(libro.id(), libro);
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(Long id) {
+        bloqueo.writeLock().lock();
+        try {
+            contenido.eliminar(id);
+            if (cambiosDuranteReconstruccion != null) {
+                cambiosDuranteReconstruccion.put(id, null);
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    //elimina varios libros tomando el bloqueo una sola vez (eliminacion de una biblioteca)
+    public void eliminar(Collection<Long> ids) {
+        bloqueo.writeLock().lock();
+        try {
+            for (Long id : ids) {
+                contenido.eliminar(id);
+                if (cambiosDuranteReconstruccion != null) {
+                    cambiosDuranteReconstruccion.put(id, null);
+                }
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    //cambia la biblioteca de varios libros (movimiento en lote); los terminos no cambian
+    public void mover(Collection<Long> ids, Long bibliotecaId) {
+        bloqueo.writeLock().lock();
+        try {
+            for (Long id : ids) {
+                LibroResumen movido = contenido.mover(id, bibliotecaId);
+                if (movido != null && cambiosDuranteReconstruccion != null) {
+                    cambiosDuranteReconstruccion.put(id, movido);
+                }
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    //los libros que mejor coinciden con la busqueda, de mayor a menor puntaje
+    public List<ResultadoBusqueda> buscar(String busqueda, int cantidad) {
+        List<String> terminos = terminos(busqueda);
+        if (terminos.isEmpty()) {
+            return List.of();
+        }
+        //si la busqueda termina en medio de una palabra, esa palabra se completa ("cien a" -> "cien años")
+        boolean completarUltimo = !busqueda.isEmpty() && !SEPARADORES.matcher(busqueda.substring(busqueda.length() - 1)).matches();
+
+        bloqueo.readLock().lock();
+        try {
+            Map<Long, Double> puntajes = new HashMap<>();
+            for (int i = 0; i < terminos.size(); i++) {
+                String termino = terminos.get(i);
+                if (i == terminos.size() - 1 && completarUltimo) {
+                    contenido.puntuarPrefijo(termino, puntajes);
+                } else {
+                    contenido.puntuar(termino, 1, puntajes);
+                }
+            }
+            return contenido.mejores(puntajes, cantidad);
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    //terminos que empiezan con el prefijo, primero los que aparecen en mas libros (autocompletado)
+    public List<String> sugerir(String prefijo, int cantidad) {
+        List<String> terminos = terminos(prefijo);
+        if (terminos.isEmpty()) {
+            return List.of();
+        }
+        String ultimo = terminos.get(terminos.size() - 1);
+
+        bloqueo.readLock().lock();
+        try {
+            return contenido.conPrefijo(ultimo).entrySet().stream()
+                    .sorted(Comparator.comparingInt((Map.Entry<String, Postings> termino) -> termino.getValue().cantidad).reversed()
+                            .thenComparing(Map.Entry::getKey))
+                    .limit(cantidad)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    public int getCantidadLibros() {
+        bloqueo.readLock().lock();
+        try {
+            return contenido.libros.size();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    //palabras del texto en minusculas y sin acentos: "Cien Años de Soledad" -> [cien, anos, de, soledad]
+    static List<String> terminos(String texto) {
+        String normalizado = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> terminos = new ArrayList<>();
+        for (String termino : SEPARADORES.split(normalizado)) {
+            if (!termino.isEmpty()) {
+                terminos.add(termino);
+            }
+        }
+        return terminos;
+    }
+
+    /*
+     Los datos del indice. No es thread-safe: IndiceLibros lo protege con el bloqueo.
+     */
+    private static final class Contenido {
+
+        private final NavigableMap<String, Postings> terminos = new TreeMap<>();
+
+        private final Map<Long, LibroResumen> libros = new HashMap<>();
+
+        void guardar(LibroResumen libro) {
+            eliminar(libro.id());
+            libros.put(libro.id(), libro);
+            for (String termino : distintos(libro.nombre())) {
+                terminos.computeIfAbsent(termino, t -> new Postings()).agregar(libro.id());
+            }
+        }
+
+        void eliminar(Long id) {
+            LibroResumen anterior = libros.remove(id);
+            if (anterior == null) {
+                return;
+            }
+            for (String termino : distintos(anterior.nombre())) {
+                Postings postings = terminos.get(termino);
+                if (postings != null && postings.quitar(id) && postings.cantidad == 0) {
+                    terminos.remove(termino);
+                }
+            }
+        }
+
+        LibroResumen mover(Long id, Long bibliotecaId) {
+            return libros.computeIfPresent(id, (clave, libro) -> new LibroResumen(libro.id(), libro.nombre(), bibliotecaId));
+        }
+
+        NavigableMap<String, Postings> conPrefijo(String prefijo) {
+            return terminos.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false);
+        }
+
+        void puntuar(String termino, double peso, Map<Long, Double> puntajes) {
+            Postings postings = terminos.get(termino);
+            if (postings == null) {
+                return;
+            }
+            double puntaje = peso * idf(postings);
+            for (int i = 0; i < postings.cantidad; i++) {
+                puntajes.merge(postings.ids[i], puntaje, Double::sum);
+            }
+        }
+
+        //un libro suma una sola vez por el prefijo, con el mejor de los terminos completados que contiene
+        void puntuarPrefijo(String prefijo, Map<Long, Double> puntajes) {
+            Map<Long, Double> mejores = new HashMap<>();
+            int completados = 0;
+            for (Map.Entry<String, Postings> termino : conPrefijo(prefijo).entrySet()) {
+                if (completados++ == MAXIMO_COMPLETADOS) {
+                    break;
+                }
+                Postings postings = termino.getValue();
+                double puntaje = (termino.getKey().equals(prefijo) ? 1 : PESO_COMPLETADO) * idf(postings);
+                for (int i = 0; i < postings.cantidad; i++) {
+                    mejores.merge(postings.ids[i], puntaje, Math::max);
+                }
+            }
+            mejores.forEach((id, puntaje) -> puntajes.merge(id, puntaje, Double::sum));
+        }
+
+        List<ResultadoBusqueda> mejores(Map<Long, Double> puntajes, int cantidad) {
+            Comparator<ResultadoBusqueda> orden = Comparator.comparingDouble(ResultadoBusqueda::puntaje)
+                    .thenComparing(resultado -> -resultado.nombre().length())
+                    .thenComparing(resultado -> -resultado.id());
+
+            //los "cantidad" mejores, sin ordenar todos los candidatos; los que tienen menos puntaje que el peor
+            //de los elegidos se descartan sin crear el resultado
+            PriorityQueue<ResultadoBusqueda> seleccion = new PriorityQueue<>(orden);
+            for (Map.Entry<Long, Double> candidato : puntajes.entrySet()) {
+                double puntaje = candidato.getValue();
+                if (seleccion.size() == cantidad && puntaje < seleccion.peek().puntaje()) {
+                    continue;
+                }
+                seleccion.add(ResultadoBusqueda.de(libros.get(candidato.getKey()), puntaje));
+                if (seleccion.size() > cantidad) {
+                    seleccion.poll();
+                }
+            }
+
+            List<ResultadoBusqueda> resultado = new ArrayList<>(seleccion);
+            resultado.sort(orden.reversed());
+            return resultado;
+        }
+
+        private double idf(Postings postings) {
+            return Math.log(1 + (double) libros.size() / postings.cantidad);
+        }
+
+        private static Set<String> distintos(String nombre) {
+            return new LinkedHashSet<>(terminos(nombre));
+        }
+    }
+
+    /*
+     Ids de los libros que contienen un termino, ordenados, en un arreglo de long (sin objetos Long por libro).
+     Los ids nuevos suelen ser los mayores, asi que agregar normalmente es escribir al final.
+     */
+    private static final class Postings {
+
+        private long[] ids = new long[4];
+
+        private int cantidad;
+
+        void agregar(long id) {
+            int posicion = Arrays.binarySearch(ids, 0, cantidad, id);
+            if (posicion >= 0) {
+                return;
+            }
+            posicion = -posicion - 1;
+            if (cantidad == ids.length) {
+                ids = Arrays.copyOf(ids, cantidad * 2);
+            }
+            System.arraycopy(ids, posicion, ids, posicion + 1, cantidad - posicion);
+            ids[posicion] = id;
+            cantidad++;
+        }
+
+        boolean quitar(long id) {
+            int posicion = Arrays.binarySearch(ids, 0, cantidad, id);
+            if (posicion < 0) {
+                return false;
+            }
+            System.arraycopy(ids, posicion + 1, ids, posicion, cantidad - posicion - 1);
+            cantidad--;
+            return true;
+        }
+    }
+
+}
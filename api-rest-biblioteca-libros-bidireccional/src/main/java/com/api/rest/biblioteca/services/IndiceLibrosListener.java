@@ -0,0 +1,55 @@
+package com.api.rest.biblioteca.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.api.rest.biblioteca.dto.LibroResumen;
+import com.api.rest.biblioteca.entities.Libro;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/*
+ Mantiene IndiceLibros al dia con los libros que Hibernate inserta, actualiza o elimina: los de
+ LibroController, los de la carga masiva y los que se eliminan en cascada con su biblioteca.
+
+ El cambio se aplica al indice cuando la transaccion termina bien (afterCommit), asi un libro que no se
+ llega a guardar (por ejemplo por un nombre repetido) nunca aparece en las busquedas.
+
+ Hibernate crea este listener como un bean de Spring, por eso puede recibir el indice con @Autowired.
+ */
+public class IndiceLibrosListener {
+
+    @Autowired
+    private IndiceLibros indiceLibros;
+
+    @PostPersist
+    @PostUpdate
+    public void guardado(Libro libro) {
+        LibroResumen resumen = new LibroResumen(libro.getId(), libro.getNombre(), libro.getBiblioteca().getId());
+        alConfirmar(() -> indiceLibros.guardar(resumen));
+    }
+
+    @PostRemove
+    public void eliminado(Libro libro) {
+        Long id = libro.getId();
+        alConfirmar(() -> indiceLibros.eliminar(id));
+    }
+
+    //tambien lo usa EliminacionBibliotecaService, que elimina los libros sin pasar por este listener
+    static void alConfirmar(Runnable cambio) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cambio.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cambio.run();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.api.rest.biblioteca.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.api.rest.biblioteca.config.LecturaPropiaFilter;
+
+/*
+ Lecturas compartidas ("single flight") de GET /api/libros/{id} y GET /api/biblioteca/{id}: si llegan muchas
+ solicitudes por el mismo id a la vez, solo la primera consulta la base; las demas esperan su resultado (o su
+ excepcion) en lugar de repetir la consulta. No es una cache: la carga se olvida apenas termina, y la siguiente
+ solicitud vuelve a consultar la base.
+
+ Cada carga se ejecuta en su propia transaccion de solo lectura (con replicas, en una replica), asi las
+ solicitudes que esperan no ocupan conexiones del pool. Las solicitudes con LecturaPropiaFilter.activa() leen
+ de la base principal y no comparten cargas, porque la compartida puede venir de una replica atrasada.
+
+ Al confirmarse una escritura se olvidan las cargas en curso de lo que cambio, para que las solicitudes que
+ llegan despues no reciban datos anteriores a la escritura:
+ - un libro: el libro y todas las bibliotecas (el libro puede haber salido de otra biblioteca);
+ - una biblioteca: esa biblioteca;
+ - los cambios masivos (mover o eliminar libros por tramos): todo.
+ Los avisos llegan de LecturasCompartidasListener y de los servicios que escriben sin pasar por Hibernate.
+ */
+@Service
+public class LecturasCompartidas {
+
+    public enum Consulta {
+        VERSION_LIBRO, LIBRO, VERSION_BIBLIOTECA, BIBLIOTECA
+    }
+
+    private record Clave(Consulta consulta, Long id) {
+    }
+
+    private final ConcurrentHashMap<Clave, CompletableFuture<Object>> enCurso = new ConcurrentHashMap<>();
+
+    private final TransactionTemplate transaccionLectura;
+
+    public LecturasCompartidas(PlatformTransactionManager transactionManager) {
+        this.transaccionLectura = new TransactionTemplate(transactionManager);
+        this.transaccionLectura.setReadOnly(true);
+    }
+
+    //el resultado de "carga" para la consulta y el id, compartido con las solicitudes que lo piden al mismo tiempo
+    @SuppressWarnings("unchecked")
+    public <T> T leer(Consulta consulta, Long id, Supplier<T> carga) {
+        if (LecturaPropiaFilter.activa()) {
+            return cargar(carga);
+        }
+
+        Clave clave = new Clave(consulta, id);
+        CompletableFuture<Object> nueva = new CompletableFuture<>();
+        CompletableFuture<Object> existente = enCurso.putIfAbsent(clave, nueva);
+        if (existente != null) {
+            try {
+                return (T) existente.join();
+            } catch (CompletionException e) {
+                //la misma excepcion que recibio la solicitud que hizo la carga
+                if (e.getCause() instanceof RuntimeException causa) {
+                    throw causa;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            T resultado = cargar(carga);
+            nueva.complete(resultado);
+            return resultado;
+        } catch (RuntimeException | Error e) {
+            nueva.completeExceptionally(e);
+            throw e;
+        } finally {
+            //solo si sigue siendo la carga de esta solicitud: una escritura pudo haberla olvidado y otra empezado
+            enCurso.remove(clave, nueva);
+        }
+    }
+
+    public void libroModificado(Long id) {
+        IndiceLibrosListener.alConfirmar(() -> enCurso.keySet().removeIf(clave ->
+                (clave.consulta() == Consulta.LIBRO || clave.consulta() == Consulta.VERSION_LIBRO) && clave.id().equals(id)
+                || clave.consulta() == Consulta.BIBLIOTECA || clave.consulta() == Consulta.VERSION_BIBLIOTECA));
+    }
+
+    public void bibliotecaModificada(Long id) {
+        IndiceLibrosListener.alConfirmar(() -> enCurso.keySet().removeIf(clave ->
+                (clave.consulta() == Consulta.BIBLIOTECA || clave.consulta() == Consulta.VERSION_BIBLIOTECA) && clave.id().equals(id)));
+    }
+
+    public void todoModificado() {
+        IndiceLibrosListener.alConfirmar(enCurso::clear);
+    }
+
+    private <T> T cargar(Supplier<T> carga) {
+        return transaccionLectura.execute(estado -> carga.get());
+    }
+
+}
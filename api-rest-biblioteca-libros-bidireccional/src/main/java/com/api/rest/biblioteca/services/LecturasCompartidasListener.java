@@ -0,0 +1,38 @@
+package com.api.rest.biblioteca.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/*
+ Avisa a LecturasCompartidas de los libros y bibliotecas que Hibernate inserta, actualiza o elimina, para que
+ olvide sus cargas en curso cuando la transaccion se confirma. Como IndiceLibrosListener, Hibernate lo crea
+ como un bean de Spring.
+
+ LecturasCompartidas se recibe con @Lazy: usa el PlatformTransactionManager, que depende del EntityManagerFactory
+ que Hibernate esta creando cuando crea este listener.
+ */
+public class LecturasCompartidasListener {
+
+    @Autowired
+    @Lazy
+    private LecturasCompartidas lecturasCompartidas;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void modificado(Object entidad) {
+        if (entidad instanceof Libro libro) {
+            lecturasCompartidas.libroModificado(libro.getId());
+        } else if (entidad instanceof Biblioteca biblioteca) {
+            lecturasCompartidas.bibliotecaModificada(biblioteca.getId());
+        }
+    }
+
+}
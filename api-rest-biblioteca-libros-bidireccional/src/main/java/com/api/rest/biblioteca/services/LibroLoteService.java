@@ -0,0 +1,255 @@
+package com.api.rest.biblioteca.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.api.rest.biblioteca.dto.ErrorLote;
+import com.api.rest.biblioteca.dto.ResultadoLote;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/*
+ Carga masiva de libros.
+
+ Los libros se leen de a uno desde el cuerpo de la solicitud (un arreglo JSON o NDJSON, un libro por linea)
+ y se agrupan en tramos de biblioteca.lote.tamano libros. Cada tramo se guarda en su propia transaccion:
+ Hibernate agrupa los INSERT en lotes JDBC (hibernate.jdbc.batch_size) y al terminar el tramo se limpia el
+ contexto de persistencia, asi la memoria no crece con el tamaño del catalogo.
+
+ Cada biblioteca referenciada se consulta una sola vez en toda la carga, y los nombres repetidos se detectan
+ con una consulta por tramo en lugar de esperar al error de la restriccion unique. El contador de libros de
+ cada biblioteca (EstadisticasService) se actualiza en la misma transaccion del tramo.
+
+ Como los tramos anteriores ya estan confirmados, un libro que no se puede leer no cancela la carga: un campo
+ con un valor de otro tipo se informa como error de ese libro, y si el cuerpo deja de ser JSON valido se
+ devuelve lo guardado hasta ahi, con un error en el libro donde se corto.
+ */
+@Service
+public class LibroLoteService {
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EstadisticasService estadisticasService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${biblioteca.lote.tamano:500}")
+    private int tamanoLote;
+
+    public ResultadoLote guardarLote(InputStream cuerpo) throws IOException {
+        Carga carga = new Carga();
+
+        //readValues recorre tanto un arreglo JSON como una secuencia de objetos separados por salto de linea (NDJSON)
+        try (MappingIterator<Libro> libros = objectMapper.readerFor(Libro.class).readValues(cuerpo)) {
+            while (libros.hasNextValue()) {
+                try {
+                    carga.agregar(libros.nextValue());
+                } catch (JsonMappingException e) {
+                    //un campo con un valor de otro tipo: MappingIterator saltea el resto de ese libro y sigue con el proximo
+                    carga.rechazarInvalido(e);
+                }
+
+                if (carga.tramo.size() >= tamanoLote) {
+                    carga.guardarTramo();
+                }
+            }
+        } catch (StreamReadException e) {
+            /*
+             El cuerpo deja de ser JSON valido y no se puede seguir leyendo. Si ya se leyo algun libro (y quiza ya se
+             guardaron tramos), se guarda lo leido y se informa el libro donde se corto; si no, HTTP 400 (Bad Request).
+             */
+            if (carga.recibidos == 0) {
+                throw e;
+            }
+            carga.cortar();
+        }
+        carga.guardarTramo();
+
+        return new ResultadoLote(carga.recibidos, carga.guardados, carga.errores);
+    }
+
+    private record Pendiente(int indice, Libro libro) {
+    }
+
+    //estado de una carga: se crea uno por solicitud, por eso no necesita sincronizacion
+    private class Carga {
+
+        private final Set<Long> bibliotecasExistentes = new HashSet<>();
+        private final Set<Long> bibliotecasInexistentes = new HashSet<>();
+        private final Set<String> nombresRecibidos = new HashSet<>();
+        private final List<Pendiente> tramo = new ArrayList<>();
+        private final List<ErrorLote> errores = new ArrayList<>();
+        private int recibidos;
+        private int guardados;
+
+        void agregar(Libro libro) {
+            int indice = recibidos++;
+
+            if (libro.getNombre() == null || libro.getNombre().isBlank()) {
+                rechazar(indice, libro, "el nombre es obligatorio");
+            } else if (libro.getBiblioteca() == null || libro.getBiblioteca().getId() == null) {
+                rechazar(indice, libro, "la biblioteca es obligatoria");
+            } else if (!nombresRecibidos.add(libro.getNombre())) {
+                rechazar(indice, libro, "el nombre esta repetido dentro del lote");
+            } else {
+                tramo.add(new Pendiente(indice, libro));
+            }
+        }
+
+        void guardarTramo() {
+            if (tramo.isEmpty()) {
+                return;
+            }
+
+            resolverBibliotecas();
+
+            Set<String> nombresUsados = new HashSet<>(libroRepository.findNombresExistentes(
+                    tramo.stream().map(pendiente -> pendiente.libro().getNombre()).toList()));
+
+            List<Pendiente> validos = new ArrayList<>(tramo.size());
+            for (Pendiente pendiente : tramo) {
+                Libro libro = pendiente.libro();
+                if (bibliotecasInexistentes.contains(libro.getBiblioteca().getId())) {
+                    rechazar(pendiente.indice(), libro, "la biblioteca no existe");
+                } else if (nombresUsados.contains(libro.getNombre())) {
+                    rechazar(pendiente.indice(), libro, "ya existe un libro con ese nombre");
+                } else {
+                    validos.add(pendiente);
+                }
+            }
+            tramo.clear();
+
+            try {
+                insertar(validos);
+                guardados += validos.size();
+            } catch (DataIntegrityViolationException e) {
+                /*
+                 Otro cliente inserto alguno de estos nombres, o elimino alguna de las bibliotecas, despues de la
+                 verificacion. Se reintenta el tramo libro por libro para informar exactamente cuales fallaron y por que.
+                 */
+                for (Pendiente pendiente : validos) {
+                    try {
+                        insertar(List.of(pendiente));
+                        guardados++;
+                    } catch (DataIntegrityViolationException ex) {
+                        rechazarViolacion(pendiente, ex);
+                    }
+                }
+            }
+        }
+
+        /*
+         El motivo segun la restriccion violada (los nombres de db/migration y de Libro). Se busca el nombre en el
+         mensaje del driver, que lo incluye tanto en MySQL como en H2: el que extrae Hibernate (getConstraintName)
+         llega cortado con H2 en las claves foraneas.
+         */
+        private void rechazarViolacion(Pendiente pendiente, DataIntegrityViolationException e) {
+            String restriccion = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+            Libro libro = pendiente.libro();
+            if (restriccion.contains("uk_libros_nombre")) {
+                rechazar(pendiente.indice(), libro, "ya existe un libro con ese nombre");
+            } else if (restriccion.contains("fk_libros_biblioteca")) {
+                //los siguientes libros de esa biblioteca se rechazan sin intentar guardarlos
+                bibliotecasExistentes.remove(libro.getBiblioteca().getId());
+                bibliotecasInexistentes.add(libro.getBiblioteca().getId());
+                rechazar(pendiente.indice(), libro, "la biblioteca no existe");
+            } else {
+                rechazar(pendiente.indice(), libro, "el libro no cumple una restriccion de la base de datos");
+            }
+        }
+
+        //consulta, en una sola sentencia, las bibliotecas del tramo que todavia no se conocen
+        private void resolverBibliotecas() {
+            Set<Long> desconocidas = new HashSet<>();
+            for (Pendiente pendiente : tramo) {
+                Long id = pendiente.libro().getBiblioteca().getId();
+                if (!bibliotecasExistentes.contains(id) && !bibliotecasInexistentes.contains(id)) {
+                    desconocidas.add(id);
+                }
+            }
+
+            if (desconocidas.isEmpty()) {
+                return;
+            }
+
+            List<Long> existentes = bibliotecaRepository.findIdsExistentes(desconocidas);
+            bibliotecasExistentes.addAll(existentes);
+            desconocidas.removeAll(existentes);
+            bibliotecasInexistentes.addAll(desconocidas);
+        }
+
+        private void insertar(List<Pendiente> pendientes) {
+            if (pendientes.isEmpty()) {
+                return;
+            }
+
+            Map<Long, Long> cantidadPorBiblioteca = pendientes.stream()
+                    .collect(Collectors.groupingBy(pendiente -> pendiente.libro().getBiblioteca().getId(), Collectors.counting()));
+
+            transactionTemplate.executeWithoutResult(estado -> {
+                estadisticasService.librosAgregados(cantidadPorBiblioteca);
+                for (Pendiente pendiente : pendientes) {
+                    Libro libro = pendiente.libro();
+                    libro.setId(null); //por si el libro viene de un intento anterior que se deshizo
+                    libro.setVersion(null);
+                    //getReferenceById no consulta la base: la existencia de la biblioteca ya se verifico
+                    libro.setBiblioteca(bibliotecaRepository.getReferenceById(libro.getBiblioteca().getId()));
+                    entityManager.persist(libro);
+                }
+                libroRepository.flush();
+                entityManager.clear(); //los libros ya guardados no se vuelven a revisar en el proximo tramo
+            });
+        }
+
+        void rechazarInvalido(JsonMappingException e) {
+            String campo = e.getPath().stream()
+                    .map(JsonMappingException.Reference::getFieldName)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.joining("."));
+            errores.add(new ErrorLote(recibidos++, null, campo.isEmpty() ? "el libro no es un objeto valido" : "el campo " + campo + " tiene un valor invalido"));
+        }
+
+        void cortar() {
+            errores.add(new ErrorLote(recibidos, null, "el cuerpo no es JSON valido a partir de este libro"));
+        }
+
+        private void rechazar(int indice, Libro libro, String motivo) {
+            errores.add(new ErrorLote(indice, libro.getNombre(), motivo));
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.api.rest.biblioteca.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.api.rest.biblioteca.dto.LibroResumen;
+import com.api.rest.biblioteca.dto.ResultadoMovimiento;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+/*
+ Movimiento de libros a otra biblioteca en lote.
+
+ Con PUT /api/libros/{id} cada libro se lee, se bloquea y se guarda completo (un SELECT y un UPDATE por
+ libro, en una transaccion por libro). Aca los libros se mueven de a biblioteca.movimiento.tamano con un
+ solo UPDATE por tramo (LibroRepository.moverPorIds), todo en una transaccion: se mueven todos o ninguno.
+
+ En cada tramo, antes del UPDATE, se leen los libros bloqueando sus filas y se cuentan los que salen de cada
+ biblioteca, para ajustar los contadores de EstadisticasService (en orden de id, como en las demas escrituras). El indice de busqueda
+ se actualiza al confirmar la transaccion (igual que LecturasCompartidas), y la cache de segundo nivel la invalida Hibernate por el UPDATE masivo.
+ */
+@Service
+public class MovimientoLibrosService {
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private EstadisticasService estadisticasService;
+
+    @Autowired
+    private IndiceLibros indiceLibros;
+
+    @Autowired
+    private LecturasCompartidas lecturasCompartidas;
+
+    @Value("${biblioteca.movimiento.tamano:1000}")
+    private int tamano;
+
+    //mueve los libros con esos ids (los que no existen se ignoran)
+    @Transactional
+    public ResultadoMovimiento moverLibros(List<Long> ids, Long destinoId) {
+        List<Long> distintos = ids.stream().distinct().toList();
+        long movidos = 0;
+        for (int desde = 0; desde < distintos.size(); desde += tamano) {
+            movidos += moverTramo(distintos.subList(desde, Math.min(desde + tamano, distintos.size())), destinoId);
+        }
+        return new ResultadoMovimiento(destinoId, movidos);
+    }
+
+    //mueve todos los libros de una biblioteca a otra
+    @Transactional
+    public ResultadoMovimiento moverBiblioteca(Long origenId, Long destinoId) {
+        long movidos = 0;
+        List<Long> ids;
+        do {
+            //los libros movidos ya no estan en el origen, asi que cada consulta devuelve el tramo siguiente
+            ids = libroRepository.findIdsByBibliotecaId(origenId, Limit.of(tamano));
+            if (!ids.isEmpty()) {
+                movidos += moverTramo(ids, destinoId);
+            }
+        } while (ids.size() == tamano);
+        return new ResultadoMovimiento(destinoId, movidos);
+    }
+
+    private int moverTramo(List<Long> ids, Long destinoId) {
+        Map<Long, Long> cantidadPorBiblioteca = new HashMap<>();
+        List<Long> aMover = new ArrayList<>();
+        for (LibroResumen libro : libroRepository.findResumenesParaMover(ids)) {
+            if (!destinoId.equals(libro.bibliotecaId())) {
+                cantidadPorBiblioteca.merge(libro.bibliotecaId(), -1L, Long::sum);
+                aMover.add(libro.id());
+            }
+        }
+        if (aMover.isEmpty()) {
+            return 0;
+        }
+
+        cantidadPorBiblioteca.put(destinoId, (long) aMover.size());
+        estadisticasService.librosAgregados(cantidadPorBiblioteca);
+        int movidos = libroRepository.moverPorIds(aMover, destinoId);
+
+        IndiceLibrosListener.alConfirmar(() -> indiceLibros.mover(aMover, destinoId));
+        lecturasCompartidas.todoModificado();
+        return movidos;
+    }
+
+}
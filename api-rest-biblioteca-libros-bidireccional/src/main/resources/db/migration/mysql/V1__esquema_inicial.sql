@@ -0,0 +1,28 @@
+-- Esquema inicial: el mismo que generaba Hibernate con create-drop
+
+create table biblioteca (
+    id bigint not null auto_increment,
+    nombre varchar(255) not null,
+    cantidad_libros bigint,
+    version bigint default 0 not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_biblioteca_cantidad_libros on biblioteca (cantidad_libros);
+
+create table libros (
+    id bigint not null,
+    nombre varchar(255) not null,
+    biblioteca_id bigint not null,
+    version bigint default 0 not null,
+    primary key (id),
+    constraint uk_libros_nombre unique (nombre),
+    constraint fk_libros_biblioteca foreign key (biblioteca_id) references biblioteca (id)
+) engine=InnoDB;
+
+-- MySQL no tiene secuencias: Hibernate toma los ids de los libros (de a 50) de esta tabla
+create table libros_seq (
+    next_val bigint
+) engine=InnoDB;
+
+insert into libros_seq values (1);
@@ -0,0 +1,3 @@
+-- Version de los libros de cada biblioteca, para el ETag de GET /api/biblioteca/{id} (Biblioteca.versionLibros)
+
+alter table biblioteca add column version_libros bigint default 0 not null;
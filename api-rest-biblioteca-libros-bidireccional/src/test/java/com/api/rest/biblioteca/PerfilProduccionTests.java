@@ -0,0 +1,71 @@
+package com.api.rest.biblioteca;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ El perfil "produccion" sobre H2: las tablas las crea la migracion de src/test/resources/db/migration/h2 y
+ Hibernate solo las valida (si no coincidieran con las entidades, el contexto no se levantaria).
+ Usa su propia base, porque el resto de los tests crea las tablas con create-drop.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:produccion_db;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect"})
+@ActiveProfiles("produccion")
+@AutoConfigureMockMvc
+class PerfilProduccionTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void lasTablasLasCreaLaMigracion() {
+        assertThat(jdbcTemplate.queryForList("select \"version\" from \"flyway_schema_history\" where \"version\" is not null and \"success\"", String.class)).containsExactly("1", "2", "3");
+        //Hibernate habria generado otro nombre para la restriccion
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.table_constraints where constraint_name = 'UK_LIBROS_NOMBRE'", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void guardaYLeeLibros() throws Exception {
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        Long bibliotecaId = bibliotecaRepository.save(biblioteca).getId();
+
+        String respuesta = mockMvc.perform(post("/api/libros").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nombre\": \"Rayuela\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long libroId = objectMapper.readTree(respuesta).get("id").asLong();
+
+        mockMvc.perform(get("/api/libros/" + libroId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nombre").value("Rayuela"));
+    }
+
+}
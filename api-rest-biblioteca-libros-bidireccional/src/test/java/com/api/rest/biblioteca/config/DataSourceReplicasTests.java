@@ -0,0 +1,180 @@
+package com.api.rest.biblioteca.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.servlet.http.Cookie;
+
+/*
+ DataSourceReplicas con tres bases H2 en memoria: la principal y dos replicas. Una replica "cae" cuando su
+ DataSource empieza a lanzar SQLException, como cuando el pool no consigue una conexion.
+ */
+class DataSourceReplicasTests {
+
+    private static final String PRINCIPAL = "jdbc:h2:mem:principal_replicas";
+
+    private static final String REPLICA_1 = "jdbc:h2:mem:replica_1";
+
+    private static final String REPLICA_2 = "jdbc:h2:mem:replica_2";
+
+    private final Replica replica1 = new Replica(REPLICA_1);
+
+    private final Replica replica2 = new Replica(REPLICA_2);
+
+    //sin verificacion periodica: los tests la ejecutan con verificar()
+    private final DataSourceReplicas dataSource = new DataSourceReplicas(new DriverManagerDataSource(PRINCIPAL),
+            List.of(replica1, replica2), Duration.ofMillis(300),
+            new DataSourceReplicas.Verificacion(Duration.ZERO, "select retraso from estado_replica", Duration.ofSeconds(10)));
+
+    @AfterEach
+    void cerrar() {
+        dataSource.close();
+    }
+
+    @Test
+    void lasEscriturasVanALaPrincipal() throws SQLException {
+        assertThat(url(false)).isEqualTo(PRINCIPAL);
+        assertThat(url(false)).isEqualTo(PRINCIPAL);
+    }
+
+    @Test
+    void lasLecturasSeRepartenEntreLasReplicas() throws SQLException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            urls.add(url(true));
+        }
+
+        assertThat(urls).containsExactly(REPLICA_1, REPLICA_2, REPLICA_1, REPLICA_2);
+    }
+
+    @Test
+    void unaReplicaCaidaSeDejaDeUsarHastaElReintento() throws Exception {
+        replica1.caida = true;
+
+        assertThat(url(true)).isEqualTo(REPLICA_2);
+        assertThat(url(true)).isEqualTo(REPLICA_2);
+        assertThat(url(true)).isEqualTo(REPLICA_2);
+        //solo se intento una vez: despues se saltea sin esperar
+        assertThat(replica1.intentos).isEqualTo(1);
+
+        replica1.caida = false;
+        Thread.sleep(400);
+        List<String> urls = List.of(url(true), url(true));
+
+        assertThat(urls).containsExactlyInAnyOrder(REPLICA_1, REPLICA_2);
+    }
+
+    @Test
+    void unaReplicaAtrasadaSaleDeLaRotacionHastaPonerseAlDia() throws SQLException {
+        retraso(REPLICA_1, 30);
+        retraso(REPLICA_2, 0);
+        dataSource.verificar();
+
+        assertThat(List.of(url(true), url(true), url(true))).containsOnly(REPLICA_2);
+
+        retraso(REPLICA_1, 2);
+        dataSource.verificar();
+
+        assertThat(List.of(url(true), url(true))).containsExactlyInAnyOrder(REPLICA_1, REPLICA_2);
+    }
+
+    @Test
+    void unaReplicaSinReplicacionOQueNoRespondeSaleDeLaRotacion() throws SQLException {
+        retraso(REPLICA_1, null);
+        retraso(REPLICA_2, 0);
+        replica2.caida = true;
+        dataSource.verificar();
+        replica2.caida = false;
+
+        //la replica 2 ya responde, pero no se usa hasta la siguiente verificacion
+        assertThat(List.of(url(true), url(true))).containsOnly(PRINCIPAL);
+        assertThat(replica2.intentos).isEqualTo(1);
+    }
+
+    @Test
+    void sinReplicasSeLeeDeLaPrincipal() throws SQLException {
+        replica1.caida = true;
+        replica2.caida = true;
+
+        assertThat(url(true)).isEqualTo(PRINCIPAL);
+        assertThat(url(true)).isEqualTo(PRINCIPAL);
+    }
+
+    @Test
+    void despuesDeEscribirElClienteLeeDeLaPrincipal() throws Exception {
+        LecturaPropiaFilter filtro = new LecturaPropiaFilter(Duration.ofSeconds(5));
+        List<String> urls = new ArrayList<>();
+
+        MockHttpServletResponse escritura = new MockHttpServletResponse();
+        filtro.doFilter(new MockHttpServletRequest("PUT", "/api/libros/1"), escritura, (request, response) -> urls.add(leer()));
+        Cookie cookie = escritura.getCookie(LecturaPropiaFilter.COOKIE);
+
+        MockHttpServletRequest conCookie = new MockHttpServletRequest("GET", "/api/libros/1");
+        conCookie.setCookies(cookie);
+        filtro.doFilter(conCookie, new MockHttpServletResponse(), (request, response) -> urls.add(leer()));
+        filtro.doFilter(new MockHttpServletRequest("GET", "/api/libros/1"), new MockHttpServletResponse(), (request, response) -> urls.add(leer()));
+
+        assertThat(cookie.getMaxAge()).isEqualTo(5);
+        assertThat(urls).containsExactly(PRINCIPAL, PRINCIPAL, REPLICA_1);
+    }
+
+    //el retraso que informa la replica, en segundos (null: replicacion detenida)
+    private static void retraso(String url, Integer segundos) {
+        JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(url + ";DB_CLOSE_DELAY=-1"));
+        replica.execute("create table if not exists estado_replica (retraso int)");
+        replica.update("delete from estado_replica");
+        replica.update("insert into estado_replica values (?)", segundos);
+    }
+
+    private String leer() {
+        try {
+            return url(true);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //la url de la base de la que se toma la conexion, como en una transaccion de solo lectura o no
+    private String url(boolean soloLectura) throws SQLException {
+        try (Connection conexion = dataSource.getConnection()) {
+            conexion.setReadOnly(soloLectura);
+            return ((ConnectionProxy) conexion).getTargetConnection().getMetaData().getURL();
+        }
+    }
+
+    private static class Replica extends DelegatingDataSource {
+
+        private volatile boolean caida;
+
+        private int intentos;
+
+        Replica(String url) {
+            super(new DriverManagerDataSource(url));
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (caida) {
+                intentos++;
+                throw new SQLException("Conexion rechazada");
+            }
+            return super.getConnection();
+        }
+
+    }
+
+}
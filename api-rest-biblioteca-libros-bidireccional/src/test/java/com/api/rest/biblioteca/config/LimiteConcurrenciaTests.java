@@ -0,0 +1,163 @@
+package com.api.rest.biblioteca.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.api.rest.biblioteca.config.LimiteConcurrenciaFilter.Grupo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ LimiteConcurrencia (el ajuste del limite segun la latencia), LimiteConcurrenciaFilter (los grupos, el 503 y las
+ solicitudes asincronas) y LimitesConfig (los maximos de los grupos costosos contra el pool de conexiones).
+ */
+class LimiteConcurrenciaTests {
+
+    private static final Duration RAPIDA = Duration.ofMillis(10);
+
+    private static final Duration LENTA = Duration.ofSeconds(1);
+
+    private final SimpleMeterRegistry registro = new SimpleMeterRegistry();
+
+    @Test
+    void rechazaLasSolicitudesQueSuperanElLimite() {
+        LimiteConcurrencia limite = limite("listados", 2, 1, 10);
+
+        assertThat(limite.intentar()).isTrue();
+        assertThat(limite.intentar()).isTrue();
+        assertThat(limite.intentar()).isFalse();
+        limite.terminar(RAPIDA);
+        assertThat(limite.intentar()).isTrue();
+
+        assertThat(registro.get("biblioteca.concurrencia.rechazadas").tag("grupo", "listados").counter().count()).isEqualTo(1);
+        assertThat(registro.get("biblioteca.concurrencia.activas").tag("grupo", "listados").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void elLimiteBajaConSolicitudesLentasYSubeConRapidas() {
+        LimiteConcurrencia limite = limite("listados", 10, 2, 12);
+
+        //cada solicitud lenta baja el limite un 10%, hasta el minimo
+        ocupar(limite, 10);
+        limite.terminar(LENTA);
+        assertThat(limite.limite()).isEqualTo(9);
+        for (int i = 0; i < 9; i++) {
+            limite.terminar(LENTA);
+        }
+        assertThat(limite.limite()).isEqualTo(3);
+        for (int i = 0; i < 20; i++) {
+            ocupar(limite, 1);
+            limite.terminar(LENTA);
+        }
+        assertThat(limite.limite()).isEqualTo(2);
+
+        //las rapidas lo suben de a 1 mientras se use al menos la mitad, hasta el maximo
+        for (int i = 0; i < 20; i++) {
+            ocupar(limite, limite.limite());
+            while (limite.activas() > 0) {
+                limite.terminar(RAPIDA);
+            }
+        }
+        assertThat(limite.limite()).isEqualTo(12);
+        assertThat(registro.get("biblioteca.concurrencia.limite").tag("grupo", "listados").gauge().value()).isEqualTo(12);
+
+        //con poco uso el limite no sube
+        LimiteConcurrencia pocoUsado = limite("consultas", 10, 2, 40);
+        for (int i = 0; i < 20; i++) {
+            ocupar(pocoUsado, 1);
+            pocoUsado.terminar(RAPIDA);
+        }
+        assertThat(pocoUsado.limite()).isEqualTo(10);
+    }
+
+    @Test
+    void elFiltroRespondeConUn503SoloEnElGrupoLleno() throws Exception {
+        LimiteConcurrencia listados = limite("listados", 1, 1, 1);
+        LimiteConcurrencia consultas = limite("consultas", 1, 1, 1);
+        LimiteConcurrenciaFilter filtro = new LimiteConcurrenciaFilter(List.of(
+                Grupo.de(listados, Set.of("GET"), "/api/libros"),
+                Grupo.de(consultas, Set.of("GET"), "/api/libros/{id}")), Duration.ofSeconds(2));
+        ocupar(listados, 1);
+
+        MockHttpServletResponse listado = filtrar(filtro, "/api/libros");
+        MockHttpServletResponse consulta = filtrar(filtro, "/api/libros/1");
+        MockHttpServletResponse sinGrupo = filtrar(filtro, "/api/otros");
+
+        assertThat(listado.getStatus()).isEqualTo(503);
+        assertThat(listado.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(consulta.getStatus()).isEqualTo(200);
+        assertThat(sinGrupo.getStatus()).isEqualTo(200);
+        //la consulta devolvio su lugar al terminar
+        assertThat(consultas.activas()).isZero();
+    }
+
+    @Test
+    void unaSolicitudAsincronaOcupaSuLugarHastaTerminarLaRespuesta() throws Exception {
+        LimiteConcurrencia exportaciones = limite("exportaciones", 1, 1, 1);
+        LimiteConcurrenciaFilter filtro = new LimiteConcurrenciaFilter(List.of(
+                Grupo.de(exportaciones, Set.of("GET"), "/api/libros/export")), Duration.ofSeconds(1));
+
+        //como StreamingResponseBody: el controlador empieza la respuesta asincrona y libera el hilo
+        MockHttpServletRequest exportacion = new MockHttpServletRequest("GET", "/api/libros/export");
+        exportacion.setAsyncSupported(true);
+        filtro.doFilter(exportacion, new MockHttpServletResponse(), new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                request.startAsync();
+            }
+        }));
+
+        assertThat(exportaciones.activas()).isEqualTo(1);
+        assertThat(filtrar(filtro, "/api/libros/export").getStatus()).isEqualTo(503);
+
+        exportacion.getAsyncContext().complete();
+        assertThat(exportaciones.activas()).isZero();
+        assertThat(filtrar(filtro, "/api/libros/export").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void lasSolicitudesCostosasNoPuedenOcuparLasConexionesDeLasConsultas() {
+        MockEnvironment entorno = new MockEnvironment()
+                .withProperty("biblioteca.limites.exportaciones.maximo", "2")
+                .withProperty("biblioteca.limites.masivas.maximo", "2")
+                .withProperty("biblioteca.limites.listados.maximo", "5")
+                .withProperty("biblioteca.limites.escrituras.maximo", "6");
+        LimitesConfig config = new LimitesConfig();
+
+        //2 + 2 + 5 + 6 + 1 eliminacion en segundo plano = 16 conexiones, y quedan 4 para las consultas
+        assertThat(config.limiteConcurrenciaFilter(entorno, new SimpleMeterRegistry(), Duration.ofSeconds(1), 20, 4, 1)).isNotNull();
+        assertThatThrownBy(() -> config.limiteConcurrenciaFilter(entorno, new SimpleMeterRegistry(), Duration.ofSeconds(1), 20, 4, 2))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("suman 17");
+    }
+
+    private LimiteConcurrencia limite(String grupo, int inicial, int minimo, int maximo) {
+        return new LimiteConcurrencia(grupo, new LimiteConcurrencia.Configuracion(inicial, minimo, maximo, Duration.ofMillis(500)), registro);
+    }
+
+    private static void ocupar(LimiteConcurrencia limite, int solicitudes) {
+        for (int i = 0; i < solicitudes; i++) {
+            assertThat(limite.intentar()).isTrue();
+        }
+    }
+
+    private static MockHttpServletResponse filtrar(LimiteConcurrenciaFilter filtro, String uri) throws Exception {
+        MockHttpServletResponse respuesta = new MockHttpServletResponse();
+        filtro.doFilter(new MockHttpServletRequest("GET", uri), respuesta, new MockFilterChain());
+        return respuesta;
+    }
+
+}
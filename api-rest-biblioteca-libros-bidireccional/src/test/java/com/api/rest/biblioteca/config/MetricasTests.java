@@ -0,0 +1,139 @@
+package com.api.rest.biblioteca.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ExtendWith(OutputCaptureExtension.class)
+class MetricasTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry registro;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    private Long libroId;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        Libro libro = new Libro();
+        libro.setNombre("Rayuela");
+        biblioteca.setLibros(Set.of(libro));
+        bibliotecaRepository.save(biblioteca);
+        libroId = libroRepository.findAll().get(0).getId();
+    }
+
+    @Test
+    void cuentaLasConsultasDeCadaEndpoint() throws Exception {
+        DistributionSummary consultas = consultasDe("/api/libros/{id}");
+        long solicitudes = consultas.count();
+        double total = consultas.totalAmount();
+
+        String etag = mockMvc.perform(get("/api/libros/" + libroId)).andExpect(status().isOk()).andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/libros/" + libroId).header("If-None-Match", etag)).andExpect(status().isNotModified());
+
+        assertThat(consultas.count()).isEqualTo(solicitudes + 2);
+        //la version y el libro en la primera solicitud, solo la version en la segunda (304)
+        assertThat(consultas.totalAmount()).isEqualTo(total + 3);
+    }
+
+    @Test
+    void publicaLasMetricasEnFormatoPrometheus() throws Exception {
+        mockMvc.perform(get("/api/libros")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/biblioteca/{id}", bibliotecaRepository.findAll().get(0).getId())).andExpect(status().isOk());
+
+        String metricas = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(metricas)
+                //tiempo por endpoint, con histograma
+                .containsPattern("http_server_requests_seconds_bucket\\{.*uri=\"/api/libros\".*le=")
+                .containsPattern("http_server_requests_seconds_bucket\\{.*uri=\"/api/biblioteca/\\{id\\}\".*le=")
+                //sentencias SQL por solicitud
+                .containsPattern("biblioteca_solicitudes_consultas_bucket\\{.*uri=\"/api/biblioteca/\\{id\\}\".*le=")
+                .contains("biblioteca_jdbc_consultas_seconds_count")
+                //pool de conexiones
+                .contains("hikaricp_connections_acquire_seconds_bucket")
+                //limites de concurrencia por grupo de endpoints
+                .containsPattern("biblioteca_concurrencia_limite\\{.*grupo=\"listados\"")
+                .containsPattern("biblioteca_concurrencia_activas\\{.*grupo=\"consultas\"")
+                .contains("biblioteca_concurrencia_rechazadas_total")
+                //estadisticas de Hibernate (las de cada region de la cache de segundo nivel aparecen con el perfil "cache")
+                .contains("hibernate_query_executions_total")
+                .contains("hibernate_entities_loads_total")
+                .contains("hibernate_cache_query_requests_total");
+    }
+
+    @Test
+    void escribeSoloLasConsultasLentasMuestreadas(CapturedOutput salida) {
+        SimpleMeterRegistry registroLocal = new SimpleMeterRegistry();
+
+        new RegistroConsultas(registroLocal, Duration.ofMillis(100), 1.0).afterQuery(ejecucion(150), consulta("select lenta"));
+        new RegistroConsultas(registroLocal, Duration.ofMillis(100), 1.0).afterQuery(ejecucion(50), consulta("select rapida"));
+        new RegistroConsultas(registroLocal, Duration.ofMillis(100), 0.0).afterQuery(ejecucion(150), consulta("select no muestreada"));
+
+        assertThat(salida.getOut()).contains("Consulta lenta (150 ms): select lenta")
+                .doesNotContain("select rapida")
+                .doesNotContain("select no muestreada");
+        //el contador incluye las consultas lentas que no se escribieron
+        assertThat(registroLocal.get("biblioteca.jdbc.consultas.lentas").counter().count()).isEqualTo(2);
+        assertThat(registroLocal.get("biblioteca.jdbc.consultas").timer().count()).isEqualTo(3);
+    }
+
+    private DistributionSummary consultasDe(String uri) {
+        return DistributionSummary.builder("biblioteca.solicitudes.consultas").tag("method", "GET").tag("uri", uri).register(registro);
+    }
+
+    private static ExecutionInfo ejecucion(long milisegundos) {
+        ExecutionInfo ejecucion = new ExecutionInfo();
+        ejecucion.setElapsedTime(milisegundos);
+        return ejecucion;
+    }
+
+    private static List<QueryInfo> consulta(String sql) {
+        return List.of(new QueryInfo(sql));
+    }
+
+}
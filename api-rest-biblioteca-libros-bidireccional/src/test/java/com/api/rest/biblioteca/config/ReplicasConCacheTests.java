@@ -0,0 +1,98 @@
+package com.api.rest.biblioteca.config;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+import jakarta.servlet.http.Cookie;
+
+/*
+ Replicas con el perfil "cache", como en ReplicasLecturaTests: la replica tiene sus propias filas, asi se ve si
+ un dato salio de la principal o de la replica (directamente o a traves de la cache).
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicasConCacheTests.PRINCIPAL,
+        "biblioteca.replicas.urls=" + ReplicasConCacheTests.REPLICA,
+        "biblioteca.busqueda.reconstruir-al-iniciar=false"})
+@AutoConfigureMockMvc
+@ActiveProfiles("cache")
+class ReplicasConCacheTests {
+
+    static final String PRINCIPAL = "jdbc:h2:mem:principal_cache_db;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    static final String REPLICA = "jdbc:h2:mem:replica_cache_db;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA, "sa", ""));
+
+    private Long bibliotecaId;
+
+    private Long libroId;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        bibliotecaId = bibliotecaRepository.save(biblioteca).getId();
+        Libro libro = new Libro();
+        libro.setNombre("Rayuela");
+        libro.setBiblioteca(biblioteca);
+        libroId = libroRepository.save(libro).getId();
+
+        replica.execute("drop all objects");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/h2/V1__esquema_inicial.sql"),
+                new ClassPathResource("db/migration/h2/V2__version_libros.sql"),
+                new ClassPathResource("db/migration/h2/V3__codigo_entidades.sql")).execute(replica.getDataSource());
+        replica.update("insert into biblioteca (id, nombre, cantidad_libros) values (?, 'Central (replica)', 0)", bibliotecaId);
+        replica.update("insert into libros (id, nombre, biblioteca_id) values (?, 'Rayuela (replica)', ?)", libroId, bibliotecaId);
+    }
+
+    @Test
+    void despuesDeEscribirElClienteNoLeeLaCacheArmadaConLaReplica() throws Exception {
+        Cookie cookie = mockMvc.perform(put("/api/libros/" + libroId).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nombre\": \"Rayuela (corregido)\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId)))
+                .andExpect(status().isNoContent())
+                .andReturn().getResponse().getCookie(LecturaPropiaFilter.COOKIE);
+
+        //otro cliente lee de la replica, que todavia no tiene el cambio, y lo deja en la cache de consultas
+        mockMvc.perform(get("/api/libros/" + libroId))
+                .andExpect(jsonPath("$.nombre").value("Rayuela (replica)"));
+
+        mockMvc.perform(get("/api/libros/" + libroId).cookie(cookie))
+                .andExpect(jsonPath("$.nombre").value("Rayuela (corregido)"));
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId).cookie(cookie))
+                .andExpect(jsonPath("$.nombre").value("Central"))
+                .andExpect(jsonPath("$.libros[0].nombre").value("Rayuela (corregido)"));
+    }
+
+}
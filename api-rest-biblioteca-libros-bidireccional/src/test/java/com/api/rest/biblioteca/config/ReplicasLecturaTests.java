@@ -0,0 +1,140 @@
+package com.api.rest.biblioteca.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.dto.ResultadoBusqueda;
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.api.rest.biblioteca.services.IndiceLibros;
+
+import jakarta.servlet.http.Cookie;
+
+/*
+ La aplicacion con dos bases H2 en memoria, una como principal y otra como replica. La replica no se
+ sincroniza: tiene sus propias filas (con los mismos ids), asi se ve de cual de las dos se leyo cada dato.
+ Las tablas de la replica se crean con las migraciones de src/test/resources/db/migration/h2. Las lecturas de
+ los repositorios en el test tambien van a la replica: la principal se consulta con su propio JdbcTemplate.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicasLecturaTests.PRINCIPAL,
+        "biblioteca.replicas.urls=" + ReplicasLecturaTests.REPLICA})
+@AutoConfigureMockMvc
+class ReplicasLecturaTests {
+
+    static final String PRINCIPAL = "jdbc:h2:mem:principal_db;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    static final String REPLICA = "jdbc:h2:mem:replica_db;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private IndiceLibros indiceLibros;
+
+    private final JdbcTemplate principal = new JdbcTemplate(new DriverManagerDataSource(PRINCIPAL, "sa", ""));
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA, "sa", ""));
+
+    private Long bibliotecaId;
+
+    private Long libroId;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        bibliotecaId = bibliotecaRepository.save(biblioteca).getId();
+        Libro libro = new Libro();
+        libro.setNombre("Rayuela");
+        libro.setBiblioteca(biblioteca);
+        libroId = libroRepository.save(libro).getId();
+
+        replica.execute("drop all objects");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/h2/V1__esquema_inicial.sql"),
+                new ClassPathResource("db/migration/h2/V2__version_libros.sql"),
+                new ClassPathResource("db/migration/h2/V3__codigo_entidades.sql")).execute(replica.getDataSource());
+        replica.update("insert into biblioteca (id, nombre, cantidad_libros) values (?, 'Central (replica)', 0)", bibliotecaId);
+        replica.update("insert into libros (id, nombre, biblioteca_id) values (?, 'Rayuela (replica)', ?)", libroId, bibliotecaId);
+    }
+
+    @Test
+    void losGetLeenDeLaReplica() throws Exception {
+        mockMvc.perform(get("/api/libros/" + libroId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nombre").value("Rayuela (replica)"));
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nombre").value("Central (replica)"))
+                .andExpect(jsonPath("$.libros[0].nombre").value("Rayuela (replica)"));
+        mockMvc.perform(get("/api/libros"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].nombre").value("Rayuela (replica)"));
+    }
+
+    @Test
+    void despuesDeEscribirElClienteLeeSusCambios() throws Exception {
+        Cookie cookie = mockMvc.perform(put("/api/libros/" + libroId).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nombre\": \"Rayuela (corregido)\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId)))
+                .andExpect(status().isNoContent())
+                .andReturn().getResponse().getCookie(LecturaPropiaFilter.COOKIE);
+
+        assertThat(principal.queryForObject("select nombre from libros where id = ?", String.class, libroId)).isEqualTo("Rayuela (corregido)");
+        mockMvc.perform(get("/api/libros/" + libroId).cookie(cookie))
+                .andExpect(jsonPath("$.nombre").value("Rayuela (corregido)"));
+        //otro cliente, sin la cookie, sigue leyendo de la replica
+        mockMvc.perform(get("/api/libros/" + libroId))
+                .andExpect(jsonPath("$.nombre").value("Rayuela (replica)"));
+    }
+
+    //el indice de busqueda no se arma con los datos de una replica atrasada
+    @Test
+    void elIndiceDeBusquedaSeArmaConLaPrincipal() {
+        indiceLibros.reconstruir();
+
+        assertThat(indiceLibros.buscar("rayuela", 10)).extracting(ResultadoBusqueda::nombre).containsExactly("Rayuela");
+    }
+
+    @Test
+    void lasEscriturasLeenDeLaPrincipal() throws Exception {
+        //una biblioteca que la replica todavia no tiene
+        Biblioteca nueva = new Biblioteca();
+        nueva.setNombre("Nueva");
+        Long nuevaId = bibliotecaRepository.save(nueva).getId();
+
+        mockMvc.perform(post("/api/libros").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nombre\": \"Ficciones\", \"biblioteca\": {\"id\": %d}}".formatted(nuevaId)))
+                .andExpect(status().isCreated());
+
+        assertThat(principal.queryForObject("select count(*) from libros", Integer.class)).isEqualTo(2);
+        assertThat(replica.queryForObject("select count(*) from libros", Integer.class)).isEqualTo(1);
+    }
+
+}
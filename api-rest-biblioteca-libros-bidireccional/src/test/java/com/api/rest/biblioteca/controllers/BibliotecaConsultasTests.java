@@ -0,0 +1,144 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ Cuenta las sentencias SQL que ejecuta cada endpoint de lectura de bibliotecas, usando las
+ estadisticas de Hibernate (hibernate.generate_statistics en las propiedades de los tests).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BibliotecaConsultasTests {
+
+    private static final int BIBLIOTECAS = 40;
+    private static final int LIBROS_POR_BIBLIOTECA = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        for (int i = 0; i < BIBLIOTECAS; i++) {
+            Biblioteca biblioteca = new Biblioteca();
+            biblioteca.setNombre("Biblioteca " + i);
+
+            Set<Libro> libros = new HashSet<>();
+            for (int j = 0; j < LIBROS_POR_BIBLIOTECA; j++) {
+                Libro libro = new Libro();
+                libro.setNombre("Libro " + i + "-" + j);
+                libros.add(libro);
+            }
+            biblioteca.setLibros(libros);
+            bibliotecaRepository.save(biblioteca);
+        }
+
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void laCantidadDeConsultasNoCreceConElTamanoDeLaPagina() throws Exception {
+        long conPaginaChica = sentenciasPara("/api/biblioteca?size=5&sort=nombre");
+        long conPaginaGrande = sentenciasPara("/api/biblioteca?size=20&sort=nombre");
+
+        //pagina (con la cantidad de libros) + total + libros de las bibliotecas de la pagina
+        assertThat(conPaginaChica).isEqualTo(3);
+        assertThat(estadisticas.getEntityLoadCount()).isZero();
+        assertThat(conPaginaGrande).isEqualTo(conPaginaChica);
+    }
+
+    @Test
+    void devuelveLosLibrosEnElOrdenPedido() throws Exception {
+        mockMvc.perform(get("/api/biblioteca?size=4&sort=nombre,desc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(4))
+                .andExpect(jsonPath("$.content[0].nombre").value("Biblioteca 9"))
+                .andExpect(jsonPath("$.content[0].libros.length()").value(LIBROS_POR_BIBLIOTECA))
+                .andExpect(jsonPath("$.totalElements").value(BIBLIOTECAS));
+    }
+
+    @Test
+    void sinLibrosNoConsultaLaTablaDeLibros() throws Exception {
+        estadisticas.clear();
+
+        mockMvc.perform(get("/api/biblioteca?size=20&include=ninguno"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(20))
+                .andExpect(jsonPath("$.content[0].libros").doesNotExist());
+
+        //pagina + total, sin cargar ninguna coleccion
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(estadisticas.getCollectionLoadCount()).isZero();
+    }
+
+    //include es una lista separada por comas: cuenta el valor exacto "libros", no un texto que lo contenga
+    @Test
+    void includeSeComparaPorValoresCompletos() throws Exception {
+        mockMvc.perform(get("/api/biblioteca?size=1&include=sinlibros"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].libros").doesNotExist());
+        mockMvc.perform(get("/api/biblioteca?size=1&include=ninguno, libros"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].libros.length()").value(LIBROS_POR_BIBLIOTECA));
+        mockMvc.perform(get("/api/biblioteca?size=1&after=&include=sinlibros"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido[0].libros").doesNotExist());
+    }
+
+    @Test
+    void unaBibliotecaConSusLibrosSonTresConsultasSinEntidades() throws Exception {
+        Long id = bibliotecaRepository.findAll().get(0).getId();
+        estadisticas.clear();
+
+        mockMvc.perform(get("/api/biblioteca/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.libros.length()").value(LIBROS_POR_BIBLIOTECA))
+                .andExpect(jsonPath("$.cantidadLibros").value(LIBROS_POR_BIBLIOTECA));
+
+        //la version para el ETag + la biblioteca con la cantidad de libros + sus libros, como proyecciones
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(estadisticas.getEntityLoadCount()).isZero();
+    }
+
+    private long sentenciasPara(String url) throws Exception {
+        estadisticas.clear();
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+        return estadisticas.getPrepareStatementCount();
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.api.rest.biblioteca.services.IndiceLibros;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ Verifica que el indice de busqueda sigue a las escrituras de LibroController y BibliotecaController.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BusquedaTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private IndiceLibros indiceLibros;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long bibliotecaId;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+        indiceLibros.reconstruir();
+
+        bibliotecaId = crear("/api/biblioteca", "{\"nombre\": \"Central\"}");
+    }
+
+    @Test
+    void encuentraLosLibrosGuardadosModificadosYEliminados() throws Exception {
+        Long libroId = crear("/api/libros", libro("Cien años de soledad", bibliotecaId));
+        crear("/api/libros", libro("El laberinto de la soledad", bibliotecaId));
+
+        mockMvc.perform(get("/api/libros/search?q=soledad"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].nombre").value("Cien años de soledad"))
+                .andExpect(jsonPath("$[0].bibliotecaId").value(bibliotecaId));
+
+        mockMvc.perform(put("/api/libros/" + libroId).contentType(MediaType.APPLICATION_JSON).content(libro("Pedro Páramo", bibliotecaId)))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/libros/search?q=soledad")).andExpect(jsonPath("$.length()").value(1));
+        mockMvc.perform(get("/api/libros/search?q=pedro paramo")).andExpect(jsonPath("$[0].id").value(libroId));
+
+        mockMvc.perform(delete("/api/libros/" + libroId)).andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/libros/search?q=pedro")).andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void unLibroQueNoSeGuardoNoApareceEnLasBusquedas() throws Exception {
+        crear("/api/libros", libro("Rayuela", bibliotecaId));
+        //la carga masiva intenta guardar un nombre repetido: la transaccion del tramo falla
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[" + libro("Rayuela", bibliotecaId) + "," + libro("Ficciones", bibliotecaId) + "]"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/libros/search?q=rayuela")).andExpect(jsonPath("$.length()").value(1));
+        mockMvc.perform(get("/api/libros/search?q=ficciones")).andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void eliminarUnaBibliotecaQuitaSusLibros() throws Exception {
+        crear("/api/libros", libro("Rayuela", bibliotecaId));
+
+        mockMvc.perform(delete("/api/biblioteca/" + bibliotecaId)).andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/libros/search?q=rayuela")).andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void reconstruirIncluyeLosLibrosInsertadosPorFueraDeHibernate() throws Exception {
+        jdbcTemplate.update("insert into libros (id, nombre, biblioteca_id) values (-1, 'Ficciones', ?)", bibliotecaId);
+        mockMvc.perform(get("/api/libros/search?q=ficciones")).andExpect(jsonPath("$.length()").value(0));
+
+        indiceLibros.reconstruir();
+
+        mockMvc.perform(get("/api/libros/search?q=ficc")).andExpect(jsonPath("$[0].id").value(-1));
+        mockMvc.perform(get("/api/libros/search/suggest?q=fi")).andExpect(jsonPath("$[0]").value("ficciones"));
+    }
+
+    @Test
+    void rechazaTamanosInvalidos() throws Exception {
+        mockMvc.perform(get("/api/libros/search?q=x&size=0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/libros/search?q=x&size=101")).andExpect(status().isBadRequest());
+    }
+
+    private String libro(String nombre, Long biblioteca) {
+        return "{\"nombre\": \"%s\", \"biblioteca\": {\"id\": %d}}".formatted(nombre, biblioteca);
+    }
+
+    private Long crear(String url, String cuerpo) throws Exception {
+        String respuesta = mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content(cuerpo))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(respuesta).get("id").asLong();
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ Con el perfil "cache", verifica que las lecturas repetidas no van a la base de datos y que
+ despues de cada escritura se lee el dato nuevo y no el que estaba en la cache.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("cache")
+class CacheSegundoNivelTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics estadisticas;
+
+    private Long bibliotecaId;
+
+    private Long libroId;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+        entityManagerFactory.getCache().evictAll();
+
+        bibliotecaId = crear("/api/biblioteca", "{\"nombre\": \"Central\"}");
+        libroId = crear("/api/libros", "{\"nombre\": \"Rayuela\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId));
+
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void laSegundaLecturaDeUnLibroNoConsultaLaBase() throws Exception {
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(status().isOk());
+
+        estadisticas.clear();
+        mockMvc.perform(get("/api/libros/" + libroId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nombre").value("Rayuela"));
+
+        //la version (para el ETag) y la proyeccion salen de la cache de consultas
+        assertThat(estadisticas.getPrepareStatementCount()).isZero();
+        assertThat(estadisticas.getQueryCacheHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void laSegundaLecturaDeUnaBibliotecaNoConsultaLaBase() throws Exception {
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(status().isOk());
+
+        estadisticas.clear();
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.libros[0].nombre").value("Rayuela"));
+
+        //solo la version, para el ETag: no pasa por la cache de consultas (ver BibliotecaRepository.findVersionById)
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void modificarUnLibroNoSacaLaBibliotecaDeLaCache() throws Exception {
+        String etag = mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andReturn().getResponse().getHeader("ETag");
+        transactionTemplate.executeWithoutResult(estado -> bibliotecaRepository.findById(bibliotecaId));
+        assertThat(entityManagerFactory.getCache().contains(Biblioteca.class, bibliotecaId)).isTrue();
+
+        mockMvc.perform(put("/api/libros/" + libroId).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\": \"Rayuela (2da edicion)\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId)))
+                .andExpect(status().isNoContent());
+
+        assertThat(entityManagerFactory.getCache().contains(Biblioteca.class, bibliotecaId)).isTrue();
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.libros[0].nombre").value("Rayuela (2da edicion)"));
+    }
+
+    @Test
+    void actualizarUnLibroRefrescaLaCache() throws Exception {
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(jsonPath("$.nombre").value("Rayuela"));
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros[0].nombre").value("Rayuela"));
+
+        mockMvc.perform(put("/api/libros/" + libroId).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\": \"Rayuela (2da edicion)\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId)))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(jsonPath("$.nombre").value("Rayuela (2da edicion)"));
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros[0].nombre").value("Rayuela (2da edicion)"));
+    }
+
+    @Test
+    void moverUnLibroInvalidaLasColeccionesDeAmbasBibliotecas() throws Exception {
+        Long otraId = crear("/api/biblioteca", "{\"nombre\": \"Sucursal\"}");
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros.length()").value(1));
+        mockMvc.perform(get("/api/biblioteca/" + otraId)).andExpect(jsonPath("$.libros.length()").value(0));
+
+        mockMvc.perform(put("/api/libros/" + libroId).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\": \"Rayuela\", \"biblioteca\": {\"id\": %d}}".formatted(otraId)))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros.length()").value(0));
+        mockMvc.perform(get("/api/biblioteca/" + otraId)).andExpect(jsonPath("$.libros.length()").value(1));
+    }
+
+    @Test
+    void agregarUnLibroInvalidaLaColeccionYLasPaginas() throws Exception {
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros.length()").value(1));
+        mockMvc.perform(get("/api/libros")).andExpect(jsonPath("$.totalElements").value(1));
+
+        crear("/api/libros", "{\"nombre\": \"Ficciones\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId));
+
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros.length()").value(2));
+        mockMvc.perform(get("/api/libros")).andExpect(jsonPath("$.totalElements").value(2));
+    }
+
+    @Test
+    void eliminarInvalidaLaCache() throws Exception {
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros.length()").value(1));
+
+        mockMvc.perform(delete("/api/libros/" + libroId)).andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros.length()").value(0));
+
+        mockMvc.perform(delete("/api/biblioteca/" + bibliotecaId)).andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(status().isUnprocessableEntity());
+    }
+
+    //la biblioteca se elimina con DELETE masivos, que no pasan por la cache entidad por entidad
+    @Test
+    void eliminarUnaBibliotecaConLibrosInvalidaLaCache() throws Exception {
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros.length()").value(1));
+        mockMvc.perform(get("/api/libros")).andExpect(jsonPath("$.totalElements").value(1));
+
+        mockMvc.perform(delete("/api/biblioteca/" + bibliotecaId)).andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(get("/api/libros")).andExpect(jsonPath("$.totalElements").value(0));
+        assertThat(libroRepository.findById(libroId)).isEmpty();
+        assertThat(bibliotecaRepository.findById(bibliotecaId)).isEmpty();
+    }
+
+    @Test
+    void moverLibrosEnLoteInvalidaLasColecciones() throws Exception {
+        Long otraId = crear("/api/biblioteca", "{\"nombre\": \"Sucursal\"}");
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros.length()").value(1));
+        mockMvc.perform(get("/api/biblioteca/" + otraId)).andExpect(jsonPath("$.libros.length()").value(0));
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(jsonPath("$.bibliotecaId").value(bibliotecaId));
+        //la coleccion Biblioteca.libros de la entidad queda en la region "biblioteca-libros"
+        assertThat(idsDeLibros(bibliotecaId)).containsExactly(libroId);
+
+        mockMvc.perform(post("/api/biblioteca/" + otraId + "/libros/move").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\": [%d]}".formatted(libroId)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId)).andExpect(jsonPath("$.libros.length()").value(0));
+        mockMvc.perform(get("/api/biblioteca/" + otraId)).andExpect(jsonPath("$.libros.length()").value(1));
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(jsonPath("$.bibliotecaId").value(otraId));
+        assertThat(idsDeLibros(bibliotecaId)).isEmpty();
+        assertThat(idsDeLibros(otraId)).containsExactly(libroId);
+    }
+
+    private List<Long> idsDeLibros(Long id) {
+        return transactionTemplate.execute(estado -> bibliotecaRepository.findById(id).get().getLibros().stream().map(Libro::getId).toList());
+    }
+
+    private Long crear(String url, String cuerpo) throws Exception {
+        String respuesta = mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content(cuerpo))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(respuesta).get("id").asLong();
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+/*
+ Prueba de carga contra la aplicacion levantada en un puerto real: carga.concurrencia clientes hacen
+ solicitudes sin pausa durante carga.segundos segundos, mezclando GET /api/libros, GET /api/libros/{id}
+ y POST /api/libros. Falla si mas del 1% de las solicitudes responde con error.
+
+ Las subclases la ejecutan con hilos de plataforma y con hilos virtuales, y pueden agregar sus propias verificaciones.
+ Tarda, por eso solo se ejecuta con -Dbenchmark=true.
+
+ Sin limites de concurrencia (LimitesConfig): con ellos, la mayoria de las solicitudes de los 400 clientes se
+ rechazarian enseguida con HTTP 503 y la prueba mediria esos rechazos en lugar de los hilos. Los 503 se cuentan
+ aparte y no como errores: si hay alguno, los limites siguen habilitados y la prueba falla por eso.
+ */
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:carga_db;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "biblioteca.limites.habilitados=false"})
+abstract class CargaConcurrente {
+
+    private static final int LIBROS = 1_000;
+
+    @LocalServerPort
+    private int puerto;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long bibliotecaId;
+
+    private final AtomicLong nuevos = new AtomicLong();
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        bibliotecaId = bibliotecaRepository.save(biblioteca).getId();
+        //ids negativos para no chocar con los que asigna la secuencia a los libros nuevos
+        jdbcTemplate.update("insert into libros (id, nombre, biblioteca_id) select -x, concat('Libro ', x), ? from system_range(1, ?)",
+                bibliotecaId, LIBROS);
+    }
+
+    @Test
+    void solicitudesConcurrentes() throws Exception {
+        int concurrencia = Integer.getInteger("carga.concurrencia", 400);
+        Duration duracion = Duration.ofSeconds(Integer.getInteger("carga.segundos", 10));
+
+        HttpClient cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ExecutorService clientes = Executors.newFixedThreadPool(concurrencia);
+        AtomicLong solicitudes = new AtomicLong();
+        AtomicLong errores = new AtomicLong();
+        AtomicLong rechazadas = new AtomicLong();
+
+        long fin = System.nanoTime() + duracion.toNanos();
+        for (int i = 0; i < concurrencia; i++) {
+            clientes.submit(() -> {
+                while (System.nanoTime() < fin) {
+                    try {
+                        int estado = cliente.send(solicitud(), HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (estado == 503) {
+                            rechazadas.incrementAndGet();
+                            continue;
+                        }
+                        if (estado >= 400) {
+                            errores.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errores.incrementAndGet();
+                    }
+                    solicitudes.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        clientes.shutdown();
+        clientes.awaitTermination(duracion.toSeconds() + 60, java.util.concurrent.TimeUnit.SECONDS);
+
+        assertThat(solicitudes.get()).isPositive();
+        assertThat(rechazadas.get()).isZero();
+        assertThat(errores.get()).isLessThanOrEqualTo(solicitudes.get() / 100);
+    }
+
+    private HttpRequest solicitud() {
+        String base = "http://localhost:" + puerto + "/api/libros";
+        int tipo = ThreadLocalRandom.current().nextInt(10);
+        if (tipo == 0) {
+            String cuerpo = "{\"nombre\": \"Nuevo %d\", \"biblioteca\": {\"id\": %d}}".formatted(nuevos.incrementAndGet(), bibliotecaId);
+            return HttpRequest.newBuilder(URI.create(base)).header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(cuerpo)).build();
+        }
+        if (tipo < 5) {
+            return HttpRequest.newBuilder(URI.create(base + "?size=20&page=" + ThreadLocalRandom.current().nextInt(LIBROS / 20))).build();
+        }
+        return HttpRequest.newBuilder(URI.create(base + "/-" + (1 + ThreadLocalRandom.current().nextInt(LIBROS)))).build();
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.api.rest.biblioteca.controllers;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+
+//la carga de CargaConcurrente con el pool de hilos de Tomcat y el pool de conexiones por defecto
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CargaHilosPlataformaTests extends CargaConcurrente {
+
+}
@@ -0,0 +1,32 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.api.rest.biblioteca.config.DiagnosticoFijacion;
+
+//la carga de CargaConcurrente con el perfil "virtual": un hilo virtual por solicitud
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("virtual")
+@EnabledForJreRange(min = JRE.JAVA_21)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CargaHilosVirtualesTests extends CargaConcurrente {
+
+    @Autowired
+    private DiagnosticoFijacion diagnosticoFijacion;
+
+    //ningun hilo virtual quedo fijado a su hilo de plataforma mas que el umbral (DiagnosticoFijacion)
+    @AfterEach
+    void sinFijaciones() {
+        assertThat(diagnosticoFijacion.getFijaciones()).isZero();
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ Estadisticas leidas del contador biblioteca.cantidad_libros (biblioteca.estadisticas.contador=true): el
+ contador tiene que coincidir siempre con la cantidad real de libros de la tabla.
+ */
+@SpringBootTest(properties = "biblioteca.estadisticas.contador=true")
+@AutoConfigureMockMvc
+class ContadorLibrosTests {
+
+    private static final int BIBLIOTECAS = 4;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> bibliotecas = new ArrayList<>();
+
+    private final AtomicInteger nombres = new AtomicInteger();
+
+    @BeforeEach
+    void preparar() throws Exception {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+        bibliotecas.clear();
+
+        for (int i = 0; i < BIBLIOTECAS; i++) {
+            bibliotecas.add(crear("/api/biblioteca", "{\"nombre\": \"Biblioteca %d\"}".formatted(i)));
+        }
+    }
+
+    @Test
+    void elContadorSigueLasAltasCambiosYBajas() throws Exception {
+        Long libro = crear("/api/libros", libro(bibliotecas.get(0)));
+        crear("/api/libros", libro(bibliotecas.get(0)));
+        verificarContadores();
+
+        mockMvc.perform(put("/api/libros/" + libro).contentType(MediaType.APPLICATION_JSON).content(libro(bibliotecas.get(1))))
+                .andExpect(status().isNoContent());
+        verificarContadores();
+
+        mockMvc.perform(delete("/api/libros/" + libro)).andExpect(status().isNoContent());
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[" + libro(bibliotecas.get(2)) + "," + libro(bibliotecas.get(2)) + "," + libro(bibliotecas.get(3)) + "]"))
+                .andExpect(status().isOk());
+        verificarContadores();
+
+        mockMvc.perform(get("/api/biblioteca/stats"))
+                .andExpect(jsonPath("$.libros").value(4))
+                .andExpect(jsonPath("$.mayores[0].id").value(bibliotecas.get(2)))
+                .andExpect(jsonPath("$.mayores[0].cantidadLibros").value(2));
+    }
+
+    @Test
+    void modificarLaBibliotecaNoPisaElContador() throws Exception {
+        Long conLibros = crear("/api/biblioteca", "{\"nombre\": \"Con libros\", \"libros\": [{\"nombre\": \"Rayuela\"}, {\"nombre\": \"Ficciones\"}]}");
+        crear("/api/libros", libro(conLibros));
+
+        mockMvc.perform(put("/api/biblioteca/" + conLibros).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\": \"Renombrada\", \"cantidadLibros\": 0}"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/biblioteca/" + conLibros + "/stats"))
+                .andExpect(jsonPath("$.nombre").value("Renombrada"))
+                .andExpect(jsonPath("$.cantidadLibros").value(3));
+    }
+
+    //altas, cambios de biblioteca y bajas desde varios hilos a la vez, sobre las mismas bibliotecas y libros
+    @Test
+    void elContadorEsConsistenteConEscriturasConcurrentes() throws Exception {
+        List<Long> libros = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            libros.add(crear("/api/libros", libro(bibliotecas.get(i % BIBLIOTECAS))));
+        }
+
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            tareas.add(hilos.submit(() -> {
+                ThreadLocalRandom azar = ThreadLocalRandom.current();
+                Long biblioteca = bibliotecas.get(azar.nextInt(BIBLIOTECAS));
+                Long existente = libros.get(azar.nextInt(libros.size()));
+                int operacion = azar.nextInt(10);
+                if (operacion < 5) {
+                    mockMvc.perform(post("/api/libros").contentType(MediaType.APPLICATION_JSON).content(libro(biblioteca)));
+                } else if (operacion < 8) {
+                    mockMvc.perform(put("/api/libros/" + existente).contentType(MediaType.APPLICATION_JSON).content(libro(biblioteca)));
+                } else {
+                    mockMvc.perform(delete("/api/libros/" + existente));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        hilos.shutdown();
+
+        verificarContadores();
+        JsonNode generales = leer("/api/biblioteca/stats");
+        assertThat(generales.get("libros").asLong()).isEqualTo(libroRepository.count());
+    }
+
+    //compara el contador de cada biblioteca con la cantidad real de filas en la tabla de libros
+    private void verificarContadores() throws Exception {
+        for (Long biblioteca : bibliotecas) {
+            long real = jdbcTemplate.queryForObject("select count(*) from libros where biblioteca_id = ?", Long.class, biblioteca);
+            assertThat(leer("/api/biblioteca/" + biblioteca + "/stats").get("cantidadLibros").asLong())
+                    .as("libros de la biblioteca %d", biblioteca)
+                    .isEqualTo(real);
+        }
+    }
+
+    private String libro(Long biblioteca) {
+        return "{\"nombre\": \"Libro %d\", \"biblioteca\": {\"id\": %d}}".formatted(nombres.incrementAndGet(), biblioteca);
+    }
+
+    private JsonNode leer(String url) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+    }
+
+    private Long crear(String url, String cuerpo) throws Exception {
+        String respuesta = mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content(cuerpo))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(respuesta).get("id").asLong();
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.api.rest.biblioteca.services.IndiceLibros;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ DELETE /api/biblioteca/{id} elimina los libros por tramos de biblioteca.eliminacion.tamano (30 en este test):
+ la cantidad de sentencias depende de la cantidad de tramos, no de la cantidad de libros.
+ */
+@SpringBootTest(properties = "biblioteca.eliminacion.tamano=30")
+@AutoConfigureMockMvc
+class EliminacionBibliotecaTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private IndiceLibros indiceLibros;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+        indiceLibros.reconstruir();
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void laCantidadDeSentenciasNoCreceConLaCantidadDeLibros() throws Exception {
+        //un solo tramo en los dos casos: 5 y 25 libros
+        assertThat(sentenciasAlEliminar(guardar("Chica", 5))).isEqualTo(sentenciasAlEliminar(guardar("Mediana", 25)));
+
+        //con 200 libros son 7 tramos, uno cada 30 libros: las sentencias crecen con los tramos y no libro por libro
+        long unTramo = sentenciasAlEliminar(guardar("Otra", 5));
+        long sieteTramos = sentenciasAlEliminar(guardar("Grande", 200));
+        assertThat(sieteTramos).isLessThanOrEqualTo(unTramo * 7);
+
+        assertThat(libroRepository.count()).isZero();
+        assertThat(bibliotecaRepository.count()).isZero();
+        assertThat(indiceLibros.getCantidadLibros()).isZero();
+    }
+
+    @Test
+    void otrasBibliotecasNoSeModifican() throws Exception {
+        Long eliminada = guardar("Eliminada", 40);
+        Long otra = guardar("Otra", 3);
+
+        mockMvc.perform(delete("/api/biblioteca/" + eliminada)).andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/biblioteca/" + eliminada)).andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(get("/api/biblioteca/" + otra)).andExpect(jsonPath("$.libros.length()").value(3));
+        mockMvc.perform(get("/api/libros/search?q=Eliminada")).andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/api/libros/search?q=Otra")).andExpect(jsonPath("$.length()").value(3));
+        mockMvc.perform(delete("/api/biblioteca/" + eliminada)).andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void eliminacionEnSegundoPlano() throws Exception {
+        Long bibliotecaId = guardar("Central", 100);
+
+        String ubicacion = mockMvc.perform(delete("/api/biblioteca/" + bibliotecaId + "?async=true"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.bibliotecaId").value(bibliotecaId))
+                .andReturn().getResponse().getHeader("Location");
+
+        JsonNode estado = null;
+        for (int intento = 0; intento < 100; intento++) {
+            estado = objectMapper.readTree(mockMvc.perform(get(ubicacion)).andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            if (!"EN_CURSO".equals(estado.get("estado").asText())) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+
+        assertThat(estado.get("estado").asText()).isEqualTo("TERMINADA");
+        assertThat(estado.get("librosEliminados").asLong()).isEqualTo(100);
+        assertThat(libroRepository.count()).isZero();
+        assertThat(bibliotecaRepository.existsById(bibliotecaId)).isFalse();
+
+        mockMvc.perform(get("/api/biblioteca/eliminaciones/desconocida")).andExpect(status().isNotFound());
+    }
+
+    private long sentenciasAlEliminar(Long bibliotecaId) throws Exception {
+        estadisticas.clear();
+        mockMvc.perform(delete("/api/biblioteca/" + bibliotecaId)).andExpect(status().isNoContent());
+        return estadisticas.getPrepareStatementCount();
+    }
+
+    private Long guardar(String nombre, int libros) {
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre(nombre);
+        Long id = bibliotecaRepository.save(biblioteca).getId();
+
+        List<Libro> nuevos = new ArrayList<>();
+        for (int i = 0; i < libros; i++) {
+            Libro libro = new Libro();
+            libro.setNombre(nombre + " " + i);
+            libro.setBiblioteca(biblioteca);
+            nuevos.add(libro);
+        }
+        libroRepository.saveAll(nuevos);
+        return id;
+    }
+
+}
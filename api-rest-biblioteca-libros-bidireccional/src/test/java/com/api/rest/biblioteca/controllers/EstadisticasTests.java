@@ -0,0 +1,103 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ Estadisticas calculadas con GROUP BY (biblioteca.estadisticas.contador=false, el valor por defecto).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class EstadisticasTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long chica;
+
+    private Long grande;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        chica = guardar("Chica", 1);
+        grande = guardar("Grande", 5);
+        guardar("Vacia", 0);
+    }
+
+    @Test
+    void calculaLosTotalesYLasBibliotecasConMasLibros() throws Exception {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        mockMvc.perform(get("/api/biblioteca/stats?top=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bibliotecas").value(3))
+                .andExpect(jsonPath("$.libros").value(6))
+                .andExpect(jsonPath("$.mayores.length()").value(2))
+                .andExpect(jsonPath("$.mayores[0].id").value(grande))
+                .andExpect(jsonPath("$.mayores[0].cantidadLibros").value(5))
+                .andExpect(jsonPath("$.mayores[1].nombre").value("Chica"));
+
+        //los dos totales y el ranking, sin cargar libros ni bibliotecas
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(estadisticas.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void calculaLaCantidadDeUnaBiblioteca() throws Exception {
+        mockMvc.perform(get("/api/biblioteca/" + chica + "/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nombre").value("Chica"))
+                .andExpect(jsonPath("$.cantidadLibros").value(1));
+
+        mockMvc.perform(get("/api/biblioteca/999999/stats")).andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(get("/api/biblioteca/stats?top=0")).andExpect(status().isBadRequest());
+    }
+
+    private Long guardar(String nombre, int libros) {
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre(nombre);
+        Set<Libro> conjunto = new HashSet<>();
+        for (int i = 0; i < libros; i++) {
+            Libro libro = new Libro();
+            libro.setNombre(nombre + " " + i);
+            conjunto.add(libro);
+        }
+        biblioteca.setLibros(conjunto);
+        return bibliotecaRepository.save(biblioteca).getId();
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ GET /api/libros/{id} y GET /api/biblioteca/{id} con If-None-Match: 304 mientras el recurso no cambia, con
+ una sola consulta y sin cuerpo, y 200 con un ETag nuevo despues de cada modificacion.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class EtagTests {
+
+    private static final MediaType MERGE_PATCH = MediaType.parseMediaType("application/merge-patch+json");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics estadisticas;
+
+    private Long bibliotecaId;
+
+    private Long libroId;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        bibliotecaId = crear("/api/biblioteca", "{\"nombre\": \"Central\"}");
+        libroId = crear("/api/libros", libro("Rayuela", bibliotecaId));
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void unLibroSinCambiosSeRespondeConNotModified() throws Exception {
+        String url = "/api/libros/" + libroId;
+        String etag = etag(url);
+
+        estadisticas.clear();
+        mockMvc.perform(get(url).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(content().string(""));
+
+        //solo la version, sin leer el libro
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(estadisticas.getEntityLoadCount()).isZero();
+
+        mockMvc.perform(patch(url).contentType(MERGE_PATCH).content("{\"nombre\": \"Rayuela (2da edicion)\"}")).andExpect(status().isNoContent());
+
+        mockMvc.perform(get(url).header("If-None-Match", etag)).andExpect(status().isOk());
+        assertThat(etag(url)).isNotEqualTo(etag);
+    }
+
+    @Test
+    void laBibliotecaCambiaSuEtagCuandoCambianSusLibros() throws Exception {
+        String url = "/api/biblioteca/" + bibliotecaId;
+        String etag = etag(url);
+
+        estadisticas.clear();
+        mockMvc.perform(get(url).header("If-None-Match", etag)).andExpect(status().isNotModified());
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(1);
+
+        //cada cambio en la biblioteca o en sus libros responde 200 al ETag anterior
+        etag = cambiaElEtag(url, etag, () -> crear("/api/libros", libro("Ficciones", bibliotecaId)));
+        etag = cambiaElEtag(url, etag, () -> mockMvc.perform(patch("/api/libros/" + libroId).contentType(MERGE_PATCH).content("{\"nombre\": \"Rayuela 2\"}")));
+        etag = cambiaElEtag(url, etag, () -> mockMvc.perform(patch(url).contentType(MERGE_PATCH).content("{\"nombre\": \"Sucursal\"}")));
+        //el PUT de la biblioteca modifica uno de sus libros, pero no la biblioteca
+        etag = cambiaElEtag(url, etag, () -> mockMvc.perform(put(url).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\": \"Sucursal\", \"libros\": [{\"id\": %d, \"nombre\": \"Rayuela 3\", \"version\": %d}]}"
+                        .formatted(libroId, libroRepository.findById(libroId).get().getVersion())))
+                .andExpect(status().isNoContent()));
+
+        Long otraId = crear("/api/biblioteca", "{\"nombre\": \"Otra\"}");
+        etag = cambiaElEtag(url, etag, () -> mockMvc.perform(patch("/api/libros/" + libroId).contentType(MERGE_PATCH)
+                .content("{\"biblioteca\": {\"id\": %d}}".formatted(otraId))));
+
+        //se elimina un libro y se agrega otro: la cantidad de libros queda igual
+        Long ficcionesId = libroRepository.findAll().stream().filter(libro -> libro.getNombre().equals("Ficciones")).findFirst().get().getId();
+        cambiaElEtag(url, etag, () -> {
+            mockMvc.perform(delete("/api/libros/" + ficcionesId)).andExpect(status().isNoContent());
+            return crear("/api/libros", libro("Ficciones", bibliotecaId));
+        });
+    }
+
+    @Test
+    void cambiarLibrosPorOtrosConLasMismasSumasCambiaElEtag() throws Exception {
+        Long otraId = crear("/api/biblioteca", "{\"nombre\": \"Otra\"}");
+        Long primero = crear("/api/libros", libro("Primero", bibliotecaId));
+        Long segundo = crear("/api/libros", libro("Segundo", otraId));
+        Long tercero = crear("/api/libros", libro("Tercero", otraId));
+        Long cuarto = crear("/api/libros", libro("Cuarto", bibliotecaId));
+        assertThat(primero + cuarto).isEqualTo(segundo + tercero);
+
+        //los libros que salen quedan con version 1, como los que entran despues de moverse
+        mockMvc.perform(patch("/api/libros/" + primero).contentType(MERGE_PATCH).content("{\"nombre\": \"Primero 2\"}")).andExpect(status().isNoContent());
+        mockMvc.perform(patch("/api/libros/" + cuarto).contentType(MERGE_PATCH).content("{\"nombre\": \"Cuarto 2\"}")).andExpect(status().isNoContent());
+        String url = "/api/biblioteca/" + bibliotecaId;
+        String etag = etag(url);
+
+        //misma cantidad de libros, misma suma de ids y misma suma de versiones, pero otros libros
+        mockMvc.perform(delete("/api/libros/" + primero)).andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/libros/" + cuarto)).andExpect(status().isNoContent());
+        mockMvc.perform(post("/api/biblioteca/" + bibliotecaId + "/libros/move").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\": [%d, %d]}".formatted(segundo, tercero))).andExpect(status().isOk());
+
+        mockMvc.perform(get(url).header("If-None-Match", etag)).andExpect(status().isOk());
+    }
+
+    @Test
+    void unRecursoInexistenteNoTieneEtag() throws Exception {
+        mockMvc.perform(get("/api/libros/999999"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(header().doesNotExist("ETag"));
+        mockMvc.perform(get("/api/biblioteca/999999").header("If-None-Match", "\"0\""))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    private interface Cambio {
+        Object aplicar() throws Exception;
+    }
+
+    private String cambiaElEtag(String url, String etag, Cambio cambio) throws Exception {
+        cambio.aplicar();
+        mockMvc.perform(get(url).header("If-None-Match", etag)).andExpect(status().isOk());
+        String nuevo = etag(url);
+        assertThat(nuevo).isNotEqualTo(etag);
+        mockMvc.perform(get(url).header("If-None-Match", nuevo)).andExpect(status().isNotModified());
+        return nuevo;
+    }
+
+    private String etag(String url) throws Exception {
+        return mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+    }
+
+    private static String libro(String nombre, Long bibliotecaId) {
+        return "{\"nombre\": \"%s\", \"biblioteca\": {\"id\": %d}}".formatted(nombre, bibliotecaId);
+    }
+
+    private Long crear(String url, String cuerpo) throws Exception {
+        String respuesta = mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content(cuerpo))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(respuesta).get("id").asLong();
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/*
+ Los mismos endpoints en JSON, CBOR y Smile segun el encabezado Accept, y la compresion gzip de las
+ respuestas. Usa el servidor real (no MockMvc), porque la compresion la hace Tomcat.
+ Tiene su propia base H2: al levantarse, create-drop volveria a crear las tablas y las secuencias que estan
+ usando los contextos de los demas tests.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:formatos_db;MODE=MySQL;DB_CLOSE_DELAY=-1")
+class FormatosBinariosTests {
+
+    private static final String CBOR = "application/cbor";
+
+    private static final String SMILE = "application/x-jackson-smile";
+
+    @LocalServerPort
+    private int puerto;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final ObjectMapper json = new ObjectMapper();
+
+    private Long bibliotecaId;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        bibliotecaId = bibliotecaRepository.save(biblioteca).getId();
+        jdbcTemplate.update("insert into libros (id, nombre, biblioteca_id) select -x, concat('Libro ', x), ? from system_range(1, 200)", bibliotecaId);
+    }
+
+    @Test
+    void losFormatosBinariosTienenLosMismosDatosQueElJson() throws Exception {
+        for (String url : new String[] {"/api/libros?size=200&sort=id", "/api/biblioteca/" + bibliotecaId}) {
+            HttpResponse<byte[]> enJson = obtener(url, "application/json", false);
+            HttpResponse<byte[]> enCbor = obtener(url, CBOR, false);
+            HttpResponse<byte[]> enSmile = obtener(url, SMILE, false);
+
+            assertThat(enCbor.headers().firstValue("Content-Type")).hasValue(CBOR);
+            assertThat(enSmile.headers().firstValue("Content-Type")).hasValue(SMILE);
+
+            JsonNode esperado = json.readTree(enJson.body());
+            assertThat(new ObjectMapper(new CBORFactory()).readTree(enCbor.body())).isEqualTo(esperado);
+            assertThat(new ObjectMapper(new SmileFactory()).readTree(enSmile.body())).isEqualTo(esperado);
+
+            assertThat(enCbor.body().length).isLessThan(enJson.body().length);
+            assertThat(enSmile.body().length).isLessThan(enJson.body().length);
+        }
+    }
+
+    @Test
+    void sinAcceptSeRespondeJson() throws Exception {
+        HttpResponse<byte[]> respuesta = cliente.send(HttpRequest.newBuilder(url("/api/libros/-1")).build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertThat(respuesta.headers().firstValue("Content-Type")).hasValue("application/json");
+    }
+
+    @Test
+    void seRecibenCuerposEnCbor() throws Exception {
+        byte[] libro = new ObjectMapper(new CBORFactory()).writeValueAsBytes(json.readTree(
+                "{\"nombre\": \"Rayuela\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId)));
+
+        HttpResponse<byte[]> respuesta = cliente.send(HttpRequest.newBuilder(url("/api/libros"))
+                .header("Content-Type", CBOR).header("Accept", CBOR)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(libro)).build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertThat(respuesta.statusCode()).isEqualTo(201);
+        assertThat(respuesta.headers().firstValue("Content-Type")).hasValue(CBOR);
+        assertThat(new ObjectMapper(new CBORFactory()).readTree(respuesta.body()).get("nombre").asText()).isEqualTo("Rayuela");
+    }
+
+    @Test
+    void lasRespuestasGrandesSeComprimen() throws Exception {
+        for (String formato : new String[] {"application/json", CBOR, SMILE}) {
+            HttpResponse<byte[]> comprimida = obtener("/api/libros?size=200&sort=id", formato, true);
+            HttpResponse<byte[]> sinComprimir = obtener("/api/libros?size=200&sort=id", formato, false);
+
+            assertThat(comprimida.headers().firstValue("Content-Encoding")).as(formato).hasValue("gzip");
+            assertThat(comprimida.body().length).isLessThan(sinComprimir.body().length);
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(comprimida.body()))) {
+                assertThat(gzip.readAllBytes()).isEqualTo(sinComprimir.body());
+            }
+        }
+
+        //las respuestas chicas (menos de server.compression.min-response-size) no se comprimen
+        assertThat(obtener("/api/libros/-1", "application/json", true).headers().firstValue("Content-Encoding")).isEmpty();
+    }
+
+    private HttpResponse<byte[]> obtener(String url, String formato, boolean gzip) throws Exception {
+        HttpRequest.Builder solicitud = HttpRequest.newBuilder(url(url)).header("Accept", formato);
+        if (gzip) {
+            solicitud.header("Accept-Encoding", "gzip");
+        }
+        HttpResponse<byte[]> respuesta = cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(respuesta.statusCode()).isEqualTo(200);
+        return respuesta;
+    }
+
+    private URI url(String ruta) {
+        return URI.create("http://localhost:" + puerto + ruta);
+    }
+
+}
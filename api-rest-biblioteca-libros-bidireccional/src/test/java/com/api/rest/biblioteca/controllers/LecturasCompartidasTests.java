@@ -0,0 +1,231 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.api.rest.biblioteca.services.LecturasCompartidas;
+import com.api.rest.biblioteca.services.LecturasCompartidas.Consulta;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ Rafagas de GET /api/libros/{id} y GET /api/biblioteca/{id} por el mismo id: las solicitudes comparten las
+ consultas de la primera (LecturasCompartidas). Para que la rafaga llegue mientras la primera consulta esta en
+ curso, Demora hace que cada SELECT tarde DEMORA antes de ejecutarse y registra las sentencias. Sin limites de
+ concurrencia (LimitesConfig): con esas demoras el limite de las consultas por id bajaria y rechazaria la rafaga.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:lecturas_compartidas_db;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "biblioteca.limites.habilitados=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.api.rest.biblioteca.controllers.LecturasCompartidasTests$Demora"})
+@AutoConfigureMockMvc
+class LecturasCompartidasTests {
+
+    private static final int SOLICITUDES = 20;
+
+    private static final long DEMORA = 500;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private LecturasCompartidas lecturasCompartidas;
+
+    private final ExecutorService hilos = Executors.newFixedThreadPool(SOLICITUDES);
+
+    private Long bibliotecaId;
+
+    private Long libroId;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        bibliotecaId = crear("/api/biblioteca", "{\"nombre\": \"Central\", \"libros\": [{\"nombre\": \"Ficciones\"}]}");
+        libroId = crear("/api/libros", "{\"nombre\": \"Rayuela\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId));
+        //la primera solicitud inicializa Spring MVC: que no quede dentro de la rafaga
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(status().isOk());
+        Demora.SELECTS.clear();
+    }
+
+    @AfterEach
+    void terminar() {
+        Demora.activa = false;
+        hilos.shutdownNow();
+    }
+
+    @Test
+    void unaRafagaPorUnLibroConsultaLaBaseUnaVez() throws Exception {
+        List<MockHttpServletResponse> respuestas = rafaga("/api/libros/" + libroId);
+
+        //la version y el libro, una vez cada uno
+        assertThat(Demora.SELECTS).hasSize(2);
+        assertThat(respuestas).allSatisfy(respuesta -> assertThat(respuesta.getStatus()).isEqualTo(200));
+        assertThat(respuestas).extracting(MockHttpServletResponse::getContentAsString).containsOnly(respuestas.get(0).getContentAsString());
+        assertThat(respuestas.get(0).getContentAsString()).contains("Rayuela");
+    }
+
+    @Test
+    void unaRafagaPorUnaBibliotecaConsultaLaBaseUnaVez() throws Exception {
+        List<MockHttpServletResponse> respuestas = rafaga("/api/biblioteca/" + bibliotecaId);
+
+        //la version, la biblioteca y sus libros, una vez cada una
+        assertThat(Demora.SELECTS).hasSize(3);
+        assertThat(respuestas).allSatisfy(respuesta -> assertThat(respuesta.getStatus()).isEqualTo(200));
+        assertThat(respuestas).extracting(MockHttpServletResponse::getContentAsString).containsOnly(respuestas.get(0).getContentAsString());
+        assertThat(respuestas.get(0).getContentAsString()).contains("Ficciones", "Rayuela");
+    }
+
+    @Test
+    void lasSolicitudesSiguientesVuelvenAConsultar() throws Exception {
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(status().isOk());
+
+        assertThat(Demora.SELECTS).hasSize(4);
+    }
+
+    @Test
+    void unaEscrituraOlvidaLaCargaEnCurso() throws Exception {
+        CountDownLatch enCarga = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+        Future<String> primera = hilos.submit(() -> lecturasCompartidas.leer(Consulta.LIBRO, libroId, () -> {
+            enCarga.countDown();
+            esperar(terminar);
+            return "antes";
+        }));
+        assertThat(enCarga.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //fuera de una transaccion el aviso se aplica enseguida, como despues de confirmar
+        lecturasCompartidas.libroModificado(libroId);
+        String despues = lecturasCompartidas.leer(Consulta.LIBRO, libroId, () -> "despues");
+        terminar.countDown();
+
+        assertThat(despues).isEqualTo("despues");
+        assertThat(primera.get(5, TimeUnit.SECONDS)).isEqualTo("antes");
+    }
+
+    @Test
+    void lasSolicitudesQueEsperanRecibenLaMismaExcepcion() throws Exception {
+        CountDownLatch enCarga = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+        AtomicInteger cargas = new AtomicInteger();
+        Future<?> primera = hilos.submit(() -> lecturasCompartidas.leer(Consulta.BIBLIOTECA, bibliotecaId, () -> {
+            cargas.incrementAndGet();
+            enCarga.countDown();
+            esperar(terminar);
+            throw new IllegalStateException("sin conexion");
+        }));
+        assertThat(enCarga.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Thread> esperando = new CopyOnWriteArrayList<>();
+        Future<?> segunda = hilos.submit(() -> {
+            esperando.add(Thread.currentThread());
+            return lecturasCompartidas.leer(Consulta.BIBLIOTECA, bibliotecaId, () -> cargas.incrementAndGet());
+        });
+        //la segunda solicitud queda esperando el resultado de la primera
+        while (esperando.isEmpty() || esperando.get(0).getState() != Thread.State.WAITING) {
+            Thread.sleep(5);
+        }
+        terminar.countDown();
+
+        assertThatThrownBy(() -> primera.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("sin conexion");
+        assertThatThrownBy(() -> segunda.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("sin conexion");
+        assertThat(cargas).hasValue(1);
+    }
+
+    //SOLICITUDES GET a la misma url, que salen juntas
+    private List<MockHttpServletResponse> rafaga(String url) throws Exception {
+        Demora.activa = true;
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<MockHttpServletResponse>> solicitudes = new ArrayList<>();
+        for (int i = 0; i < SOLICITUDES; i++) {
+            solicitudes.add(hilos.submit(() -> {
+                largada.await();
+                return mockMvc.perform(get(url)).andReturn().getResponse();
+            }));
+        }
+        largada.countDown();
+
+        List<MockHttpServletResponse> respuestas = new ArrayList<>();
+        for (Future<MockHttpServletResponse> solicitud : solicitudes) {
+            respuestas.add(solicitud.get(30, TimeUnit.SECONDS));
+        }
+        Demora.activa = false;
+        return respuestas;
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Long crear(String url, String json) throws Exception {
+        String respuesta = mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(respuesta).get("id").asLong();
+    }
+
+    public static class Demora implements StatementInspector {
+
+        static final List<String> SELECTS = new CopyOnWriteArrayList<>();
+
+        static volatile boolean activa;
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.toLowerCase(Locale.ROOT).startsWith("select")) {
+                SELECTS.add(sql);
+                if (activa) {
+                    try {
+                        Thread.sleep(DEMORA);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            return sql;
+        }
+
+    }
+
+}
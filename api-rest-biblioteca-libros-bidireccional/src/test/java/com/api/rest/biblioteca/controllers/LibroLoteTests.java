@@ -0,0 +1,193 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class LibroLoteTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @SpyBean
+    private LibroRepository libroRepository;
+
+    @SpyBean
+    private BibliotecaRepository bibliotecaRepository;
+
+    private Long bibliotecaId;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        bibliotecaId = bibliotecaRepository.save(biblioteca).getId();
+    }
+
+    @Test
+    void guardaUnArregloJsonEInformaLosErroresPorLibro() throws Exception {
+        String cuerpo = """
+                [
+                  {"nombre": "Rayuela", "biblioteca": {"id": %1$d}},
+                  {"nombre": "Ficciones", "biblioteca": {"id": %1$d}},
+                  {"nombre": "Rayuela", "biblioteca": {"id": %1$d}},
+                  {"nombre": "Sin biblioteca"},
+                  {"nombre": "Perdido", "biblioteca": {"id": 999999}}
+                ]
+                """.formatted(bibliotecaId);
+
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_JSON).content(cuerpo))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.recibidos").value(5))
+                .andExpect(jsonPath("$.guardados").value(2))
+                .andExpect(jsonPath("$.errores.length()").value(3))
+                .andExpect(jsonPath("$.errores[0].indice").value(2))
+                .andExpect(jsonPath("$.errores[1].indice").value(3))
+                .andExpect(jsonPath("$.errores[2].indice").value(4));
+
+        assertThat(libroRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void rechazaLosNombresQueYaExistenEnLaBase() throws Exception {
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson(0, 3)))
+                .andExpect(jsonPath("$.guardados").value(3));
+
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson(2, 5)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.guardados").value(2))
+                .andExpect(jsonPath("$.errores[0].nombre").value("Libro 2"))
+                .andExpect(jsonPath("$.errores[0].motivo").value("ya existe un libro con ese nombre"));
+
+        assertThat(libroRepository.count()).isEqualTo(5);
+    }
+
+    //otro cliente guarda el nombre despues de la verificacion: falla la restriccion unique al insertar
+    @Test
+    void unNombreGuardadoDuranteLaCargaSeInformaComoRepetido() throws Exception {
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_NDJSON).content(ndjson(0, 1)));
+        doReturn(List.of()).when(libroRepository).findNombresExistentes(any());
+
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_NDJSON).content(ndjson(0, 3)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.guardados").value(2))
+                .andExpect(jsonPath("$.errores[0].indice").value(0))
+                .andExpect(jsonPath("$.errores[0].motivo").value("ya existe un libro con ese nombre"));
+    }
+
+    //otro cliente elimina la biblioteca despues de la verificacion: falla la clave foranea, no el nombre
+    @Test
+    void unaBibliotecaEliminadaDuranteLaCargaNoSeInformaComoNombreRepetido() throws Exception {
+        doReturn(List.of(bibliotecaId, 999999L)).when(bibliotecaRepository).findIdsExistentes(any());
+        String cuerpo = """
+                {"nombre": "Rayuela", "biblioteca": {"id": %1$d}}
+                {"nombre": "Perdido", "biblioteca": {"id": 999999}}
+                """.formatted(bibliotecaId);
+
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_NDJSON).content(cuerpo))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.guardados").value(1))
+                .andExpect(jsonPath("$.errores[0].indice").value(1))
+                .andExpect(jsonPath("$.errores[0].motivo").value("la biblioteca no existe"));
+    }
+
+    @Test
+    void unLibroConUnCampoDeOtroTipoNoCancelaLaCarga() throws Exception {
+        String cuerpo = """
+                {"nombre": "Rayuela", "biblioteca": {"id": %1$d}}
+                {"nombre": "Ficciones", "biblioteca": {"id": "central"}}
+                {"nombre": "Aleph", "biblioteca": {"id": %1$d}}
+                """.formatted(bibliotecaId);
+
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_NDJSON).content(cuerpo))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.recibidos").value(3))
+                .andExpect(jsonPath("$.guardados").value(2))
+                .andExpect(jsonPath("$.errores[0].indice").value(1))
+                .andExpect(jsonPath("$.errores[0].motivo").value("el campo biblioteca.id tiene un valor invalido"));
+
+        assertThat(libroRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void unCuerpoQueSeCortaDevuelveLoGuardado() throws Exception {
+        String cuerpo = "[{\"nombre\": \"Rayuela\", \"biblioteca\": {\"id\": %d}}, {\"nombre\": ".formatted(bibliotecaId);
+
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_JSON).content(cuerpo))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.guardados").value(1))
+                .andExpect(jsonPath("$.errores[0].indice").value(1))
+                .andExpect(jsonPath("$.errores[0].motivo").value("el cuerpo no es JSON valido a partir de este libro"));
+
+        assertThat(libroRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void cuerpoMalFormadoDevuelve400() throws Exception {
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_JSON).content("[{\"nombre\": "))
+                .andExpect(status().isBadRequest());
+    }
+
+    /*
+     Compara la carga masiva con el camino de a un libro (POST /api/libros): los dos guardan lo mismo, y el
+     lote tiene que ser al menos 3 veces mas rapido (en la practica lo es unas 10 veces).
+     Tarda, por eso solo se ejecuta con -Dbenchmark=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void comparaElRendimientoConLaCargaDeAUnLibro() throws Exception {
+        int cantidad = 1_000;
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < cantidad; i++) {
+            mockMvc.perform(post("/api/libros").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"nombre\": \"Individual %d\", \"biblioteca\": {\"id\": %d}}".formatted(i, bibliotecaId)))
+                    .andExpect(status().isCreated());
+        }
+        long individual = System.nanoTime() - inicio;
+
+        inicio = System.nanoTime();
+        mockMvc.perform(post("/api/libros/batch").contentType(MediaType.APPLICATION_NDJSON).content(ndjson(0, cantidad)))
+                .andExpect(jsonPath("$.guardados").value(cantidad));
+        long lote = System.nanoTime() - inicio;
+
+        assertThat(libroRepository.count()).isEqualTo(2L * cantidad);
+        assertThat(lote * 3).as("lote %d ms, individual %d ms", lote / 1_000_000, individual / 1_000_000).isLessThan(individual);
+    }
+
+    private String ndjson(int desde, int hasta) {
+        StringBuilder cuerpo = new StringBuilder();
+        for (int i = desde; i < hasta; i++) {
+            cuerpo.append("{\"nombre\": \"Libro ").append(i).append("\", \"biblioteca\": {\"id\": ")
+                    .append(bibliotecaId).append("}}\n");
+        }
+        return cuerpo.toString();
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ PATCH /api/libros/{id} y PATCH /api/biblioteca/{id}: verifica las sentencias SQL de cada solicitud (que
+ Hibernate pasa por Sentencias antes de ejecutarlas) y el bloqueo optimista con la version. Sin el contador de
+ libros, tampoco el PUT de un libro lo bloquea.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.api.rest.biblioteca.controllers.ModificacionParcialTests$Sentencias")
+@AutoConfigureMockMvc
+class ModificacionParcialTests {
+
+    private static final MediaType MERGE_PATCH = MediaType.parseMediaType("application/merge-patch+json");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    private Long bibliotecaId;
+
+    private Long libroId;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        bibliotecaId = crear("/api/biblioteca", "{\"nombre\": \"Central\", \"libros\": [{\"nombre\": \"Ficciones\"}]}");
+        libroId = crear("/api/libros", "{\"nombre\": \"Rayuela\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId));
+        Sentencias.EJECUTADAS.clear();
+    }
+
+    @Test
+    void elPatchDeUnLibroActualizaSoloElNombre() throws Exception {
+        modificar("/api/libros/" + libroId, "{\"nombre\": \"Rayuela (2da edicion)\"}").andExpect(status().isNoContent());
+
+        //un SELECT por id, la version de los libros de la biblioteca (para su ETag) sin tocar la version de la biblioteca,
+        //y un UPDATE solo del nombre y la version, que verifica la version leida
+        assertThat(Sentencias.EJECUTADAS).hasSize(3);
+        assertThat(Sentencias.EJECUTADAS.get(0)).startsWith("select");
+        assertThat(Sentencias.EJECUTADAS.get(1)).isEqualTo("update biblioteca set version_libros = version_libros + 1 where id in (?)");
+        assertThat(Sentencias.EJECUTADAS.get(2)).isEqualTo("update libros set nombre=?,version=? where id=? and version=?");
+
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(jsonPath("$.nombre").value("Rayuela (2da edicion)"));
+    }
+
+    @Test
+    void elPatchDeUnaBibliotecaNoTocaSusLibros() throws Exception {
+        modificar("/api/biblioteca/" + bibliotecaId, "{\"nombre\": \"Sucursal\"}").andExpect(status().isNoContent());
+
+        assertThat(Sentencias.EJECUTADAS).hasSize(2);
+        assertThat(Sentencias.EJECUTADAS.get(1)).isEqualTo("update biblioteca set nombre=?,version=? where id=? and version=?");
+        //ninguna sentencia sobre la tabla de libros (la coleccion no se carga ni se reemplaza)
+        assertThat(Sentencias.EJECUTADAS).noneMatch(sentencia -> sentencia.matches(".*\\blibros\\b.*"));
+
+        mockMvc.perform(get("/api/biblioteca/" + bibliotecaId))
+                .andExpect(jsonPath("$.nombre").value("Sucursal"))
+                .andExpect(jsonPath("$.libros.length()").value(2));
+    }
+
+    @Test
+    void elPatchMueveElLibroAOtraBiblioteca() throws Exception {
+        Long otraId = crear("/api/biblioteca", "{\"nombre\": \"Sucursal\"}");
+        Sentencias.EJECUTADAS.clear();
+
+        modificar("/api/libros/" + libroId, "{\"biblioteca\": {\"id\": %d}}".formatted(otraId)).andExpect(status().isNoContent());
+
+        assertThat(Sentencias.EJECUTADAS).contains("update libros set biblioteca_id=?,version=? where id=? and version=?");
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(jsonPath("$.bibliotecaId").value(otraId));
+    }
+
+    @Test
+    void sinElContadorElPutNoBloqueaElLibro() throws Exception {
+        mockMvc.perform(put("/api/libros/" + libroId).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\": \"Rayuela 2\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId)))
+                .andExpect(status().isNoContent());
+
+        assertThat(Sentencias.EJECUTADAS).isNotEmpty().noneMatch(sentencia -> sentencia.contains("for update"));
+    }
+
+    @Test
+    void unaVersionViejaSeRechazaConConflicto() throws Exception {
+        modificar("/api/libros/" + libroId, "{\"nombre\": \"Rayuela 2\", \"version\": 0}").andExpect(status().isNoContent());
+
+        //la version ya es 1: los dos cambios se rechazan y el nombre no cambia
+        modificar("/api/libros/" + libroId, "{\"nombre\": \"Rayuela 3\", \"version\": 0}").andExpect(status().isConflict());
+        mockMvc.perform(put("/api/libros/" + libroId).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\": \"Rayuela 4\", \"version\": 0, \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId)))
+                .andExpect(status().isConflict());
+        modificar("/api/biblioteca/" + bibliotecaId, "{\"nombre\": \"Sucursal\", \"version\": 7}").andExpect(status().isConflict());
+
+        mockMvc.perform(get("/api/libros/" + libroId)).andExpect(jsonPath("$.nombre").value("Rayuela 2"));
+        modificar("/api/libros/" + libroId, "{\"nombre\": \"Rayuela 3\", \"version\": 1}").andExpect(status().isNoContent());
+    }
+
+    @Test
+    void losCambiosDeLosLibrosNoRechazanElPatchDeLaBiblioteca() throws Exception {
+        crear("/api/libros", "{\"nombre\": \"Ficciones 2\", \"biblioteca\": {\"id\": %d}}".formatted(bibliotecaId));
+        modificar("/api/libros/" + libroId, "{\"nombre\": \"Rayuela 2\"}").andExpect(status().isNoContent());
+
+        //la version de la biblioteca sigue siendo la que se leyo antes de los cambios de sus libros
+        modificar("/api/biblioteca/" + bibliotecaId, "{\"nombre\": \"Sucursal\", \"version\": 0}").andExpect(status().isNoContent());
+    }
+
+    @Test
+    void validaElParche() throws Exception {
+        modificar("/api/libros/" + libroId, "{\"nombre\": null}").andExpect(status().isBadRequest());
+        modificar("/api/libros/" + libroId, "{\"biblioteca\": null}").andExpect(status().isBadRequest());
+        modificar("/api/libros/" + libroId, "{\"id\": 5}").andExpect(status().isBadRequest());
+        modificar("/api/libros/" + libroId, "[]").andExpect(status().isBadRequest());
+        modificar("/api/biblioteca/" + bibliotecaId, "{\"libros\": []}").andExpect(status().isBadRequest());
+        modificar("/api/libros/" + libroId, "{\"biblioteca\": {\"id\": 999999}}").andExpect(status().isUnprocessableEntity());
+        modificar("/api/libros/999999", "{\"nombre\": \"Otro\"}").andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(patch("/api/libros/" + libroId).contentType(MediaType.APPLICATION_JSON).content("{\"nombre\": \"Otro\"}"))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
+    private ResultActions modificar(String url, String parche) throws Exception {
+        return mockMvc.perform(patch(url).contentType(MERGE_PATCH).content(parche));
+    }
+
+    private Long crear(String url, String cuerpo) throws Exception {
+        String respuesta = mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content(cuerpo))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(respuesta).get("id").asLong();
+    }
+
+    //guarda el SQL de cada sentencia que prepara Hibernate, sin alias, en minusculas
+    public static class Sentencias implements StatementInspector {
+
+        static final List<String> EJECUTADAS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            EJECUTADAS.add(sql.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").replaceAll("\\b[a-z]1_0\\.", "").trim());
+            return sql;
+        }
+
+    }
+
+}
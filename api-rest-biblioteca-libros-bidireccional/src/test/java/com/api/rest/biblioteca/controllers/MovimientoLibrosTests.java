@@ -0,0 +1,165 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.api.rest.biblioteca.services.IndiceLibros;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ POST /api/biblioteca/{destino}/libros/move, con tramos de 10 libros y el contador de libros activado para
+ verificar que se ajusta en el origen y en el destino.
+ */
+@SpringBootTest(properties = {"biblioteca.movimiento.tamano=10", "biblioteca.estadisticas.contador=true"})
+@AutoConfigureMockMvc
+class MovimientoLibrosTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private IndiceLibros indiceLibros;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long norte;
+
+    private Long sur;
+
+    private Long destino;
+
+    private List<Long> librosNorte;
+
+    private List<Long> librosSur;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        norte = guardar("Norte");
+        sur = guardar("Sur");
+        destino = guardar("Destino");
+        librosNorte = guardarLibros(norte, "Norte", 15);
+        librosSur = guardarLibros(sur, "Sur", 12);
+        guardarLibros(destino, "Destino", 2);
+        indiceLibros.reconstruir();
+    }
+
+    @Test
+    void mueveLosLibrosIndicadosPorTramos() throws Exception {
+        List<Long> ids = new ArrayList<>(librosNorte);
+        ids.addAll(librosSur.subList(0, 5));
+        ids.add(999_999L); //no existe: se ignora
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        mockMvc.perform(post("/api/biblioteca/" + destino + "/libros/move").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\": " + ids + "}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.movidos").value(20));
+
+        //3 tramos: un SELECT ... FOR UPDATE, los contadores (uno por biblioteca) y un UPDATE por tramo, no una sentencia por libro
+        assertThat(estadisticas.getPrepareStatementCount()).isLessThan(ids.size());
+
+        assertThat(cantidadLibros(norte)).isZero();
+        assertThat(cantidadLibros(sur)).isEqualTo(7);
+        assertThat(cantidadLibros(destino)).isEqualTo(22);
+        verificarContadores();
+
+        mockMvc.perform(get("/api/biblioteca/" + destino)).andExpect(jsonPath("$.libros.length()").value(22));
+        mockMvc.perform(get("/api/libros/search?q=Norte 3")).andExpect(jsonPath("$[0].bibliotecaId").value(destino));
+    }
+
+    @Test
+    void mueveTodosLosLibrosDeUnaBiblioteca() throws Exception {
+        mockMvc.perform(post("/api/biblioteca/" + destino + "/libros/move").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"desde\": " + sur + "}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.movidos").value(12));
+
+        assertThat(cantidadLibros(sur)).isZero();
+        assertThat(cantidadLibros(destino)).isEqualTo(14);
+        verificarContadores();
+    }
+
+    @Test
+    void validaLaSolicitud() throws Exception {
+        String url = "/api/biblioteca/" + destino + "/libros/move";
+        mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content("{}")).andExpect(status().isBadRequest());
+        mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content("{\"ids\": [1], \"desde\": " + sur + "}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content("{\"desde\": 999999}"))
+                .andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(post("/api/biblioteca/999999/libros/move").contentType(MediaType.APPLICATION_JSON).content("{\"ids\": " + librosSur + "}"))
+                .andExpect(status().isUnprocessableEntity());
+
+        assertThat(cantidadLibros(sur)).isEqualTo(12);
+    }
+
+    private long cantidadLibros(Long biblioteca) {
+        return jdbcTemplate.queryForObject("select count(*) from libros where biblioteca_id = ?", Long.class, biblioteca);
+    }
+
+    private void verificarContadores() {
+        for (Long biblioteca : List.of(norte, sur, destino)) {
+            assertThat(bibliotecaRepository.findEstadisticasPorContadorById(biblioteca).get().cantidadLibros())
+                    .as("contador de la biblioteca %d", biblioteca)
+                    .isEqualTo(cantidadLibros(biblioteca));
+        }
+    }
+
+    private Long guardar(String nombre) {
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre(nombre);
+        return bibliotecaRepository.save(biblioteca).getId();
+    }
+
+    private List<Long> guardarLibros(Long bibliotecaId, String nombre, int cantidad) {
+        List<Libro> libros = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            Libro libro = new Libro();
+            libro.setNombre(nombre + " " + i);
+            libro.setBiblioteca(bibliotecaRepository.getReferenceById(bibliotecaId));
+            libros.add(libro);
+        }
+        List<Long> ids = libroRepository.saveAll(libros).stream().map(Libro::getId).collect(Collectors.toList());
+        bibliotecaRepository.sumarLibros(bibliotecaId, cantidad);
+        return ids;
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.api.rest.biblioteca.dto.PaginaCursor;
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.entities.Libro;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PaginacionCursorTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Biblioteca biblioteca;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        biblioteca = bibliotecaRepository.save(biblioteca);
+    }
+
+    @Test
+    void recorreTodosLosLibrosSinContarNiRepetir() throws Exception {
+        List<Libro> libros = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            Libro libro = new Libro();
+            libro.setNombre("Libro " + i);
+            libro.setBiblioteca(biblioteca);
+            libros.add(libro);
+        }
+        libroRepository.saveAll(libros);
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<Long> leidos = new ArrayList<>();
+        String cursor = "";
+        int paginas = 0;
+
+        do {
+            estadisticas.clear();
+            JsonNode pagina = leer("/api/libros?size=20&after=" + cursor);
+            assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(1); //sin COUNT(*)
+            assertThat(pagina.has("total")).isFalse();
+
+            pagina.get("contenido").forEach(libro -> leidos.add(libro.get("id").asLong()));
+            cursor = pagina.path("siguiente").asText("");
+            paginas++;
+        } while (!cursor.isEmpty());
+
+        assertThat(paginas).isEqualTo(3);
+        assertThat(leidos).hasSize(45).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void elTotalSoloSeCalculaSiSePide() throws Exception {
+        JsonNode pagina = leer("/api/biblioteca?after=&size=5&total=true");
+
+        assertThat(pagina.get("total").asLong()).isEqualTo(1);
+        assertThat(pagina.get("contenido").get(0).get("nombre").asText()).isEqualTo("Central");
+        assertThat(pagina.has("siguiente")).isFalse();
+    }
+
+    @Test
+    void recorreLasBibliotecasConYSinLibros() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            Biblioteca otra = new Biblioteca();
+            otra.setNombre("Sucursal " + i);
+            bibliotecaRepository.save(otra);
+        }
+
+        for (String include : List.of("libros", "ninguno")) {
+            Set<Long> leidas = new HashSet<>();
+            String cursor = "";
+            do {
+                JsonNode pagina = leer("/api/biblioteca?size=3&include=" + include + "&after=" + cursor);
+                pagina.get("contenido").forEach(b -> leidas.add(b.get("id").asLong()));
+                cursor = pagina.path("siguiente").asText("");
+            } while (!cursor.isEmpty());
+
+            assertThat(leidas).hasSize(7);
+        }
+    }
+
+    //spring.data.web.pageable.max-page-size (200): con OFFSET y con cursor
+    @Test
+    void elTamanoDePaginaTieneUnMaximo() throws Exception {
+        List<Libro> libros = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            Libro libro = new Libro();
+            libro.setNombre("Libro " + i);
+            libro.setBiblioteca(biblioteca);
+            libros.add(libro);
+        }
+        libroRepository.saveAll(libros);
+
+        JsonNode conOffset = leer("/api/libros?size=1000");
+        JsonNode conCursor = leer("/api/libros?size=1000&after=");
+
+        assertThat(conOffset.get("size").asInt()).isEqualTo(200);
+        assertThat(conOffset.get("content")).hasSize(200);
+        assertThat(conCursor.get("contenido")).hasSize(200);
+    }
+
+    @Test
+    void unCursorInvalidoDevuelve400() throws Exception {
+        mockMvc.perform(get("/api/libros?after=no-es-un-cursor")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/biblioteca?after=" + PaginaCursor.codificar(1L) + "&size=0")).andExpect(status().isBadRequest());
+    }
+
+    /*
+     Con cursor la pagina 10.000 (de 20 libros) tarda lo mismo que la primera: la consulta empieza en el id del cursor
+     en lugar de recorrer los libros anteriores como OFFSET. Tarda, por eso solo se ejecuta con -Dbenchmark=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void latenciaDeLaPrimeraYLaUltimaPagina() throws Exception {
+        int cantidad = 200_000;
+        jdbcTemplate.update("insert into libros (id, nombre, biblioteca_id) select x, concat('Libro ', x), ? from system_range(1, ?)",
+                biblioteca.getId(), cantidad);
+
+        String ultimoCursor = PaginaCursor.codificar((long) cantidad - 20);
+        for (int i = 0; i < 20; i++) { //calentamiento
+            leer("/api/libros?size=20&after=");
+            leer("/api/libros?size=20&after=" + ultimoCursor);
+        }
+
+        long primera = medir("/api/libros?size=20&after=");
+        long ultima = medir("/api/libros?size=20&after=" + ultimoCursor);
+
+        assertThat(ultima).isLessThanOrEqualTo(primera * 2);
+    }
+
+    private long medir(String url) throws Exception {
+        int repeticiones = 50;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < repeticiones; i++) {
+            leer(url);
+        }
+        return (System.nanoTime() - inicio) / repeticiones / 1_000;
+    }
+
+    private JsonNode leer(String url) throws Exception {
+        String respuesta = mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(respuesta);
+    }
+
+}
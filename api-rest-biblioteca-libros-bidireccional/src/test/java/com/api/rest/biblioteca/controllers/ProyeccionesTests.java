@@ -0,0 +1,153 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.lang.management.ManagementFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ Verifica que los GET se responden con proyecciones (LibroResumen, BibliotecaResumen) sin cargar
+ entidades administradas por Hibernate.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProyeccionesTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics estadisticas;
+
+    private Long bibliotecaId;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        bibliotecaId = bibliotecaRepository.save(biblioteca).getId();
+        jdbcTemplate.update("insert into libros (id, nombre, biblioteca_id) select x, concat('Libro ', x), ? from system_range(1, 100)",
+                bibliotecaId);
+
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+    }
+
+    @Test
+    void losLibrosIncluyenElIdDeSuBiblioteca() throws Exception {
+        mockMvc.perform(get("/api/libros?size=10&sort=id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(1))
+                .andExpect(jsonPath("$.content[0].nombre").value("Libro 1"))
+                .andExpect(jsonPath("$.content[0].bibliotecaId").value(bibliotecaId));
+
+        mockMvc.perform(get("/api/libros/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bibliotecaId").value(bibliotecaId));
+
+        mockMvc.perform(get("/api/libros?size=10&after="))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido[0].bibliotecaId").value(bibliotecaId));
+
+        assertThat(estadisticas.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void lasBibliotecasIncluyenLaCantidadDeLibros() throws Exception {
+        mockMvc.perform(get("/api/biblioteca?include=ninguno"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].cantidadLibros").value(100))
+                .andExpect(jsonPath("$.content[0].libros").doesNotExist());
+
+        mockMvc.perform(get("/api/biblioteca?after="))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido[0].cantidadLibros").value(100))
+                .andExpect(jsonPath("$.contenido[0].libros.length()").value(100));
+
+        assertThat(estadisticas.getEntityLoadCount()).isZero();
+        assertThat(estadisticas.getCollectionLoadCount()).isZero();
+    }
+
+    /*
+     Compara, para una pagina de 100 libros, la lectura y serializacion de entidades (como lo hacia
+     antes el controlador) con la de proyecciones: las proyecciones asignan menos bytes por pedido,
+     porque Hibernate no guarda una copia del estado de cada libro para detectar cambios.
+     Solo se ejecuta con -Dbenchmark=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void entidadesContraProyecciones() throws Exception {
+        PageRequest pagina = PageRequest.of(0, 100);
+        Runnable entidades = () -> transactionTemplate.executeWithoutResult(estado -> serializar(libroRepository.findAll(pagina)));
+        Runnable proyecciones = () -> serializar(libroRepository.findResumenes(pagina));
+
+        for (int i = 0; i < 2_000; i++) { //calentamiento
+            entidades.run();
+            proyecciones.run();
+        }
+
+        assertThat(bytesPorPedido(proyecciones)).isLessThan(bytesPorPedido(entidades));
+    }
+
+    private long bytesPorPedido(Runnable pedido) {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int repeticiones = 5_000;
+
+        long memoriaInicial = hilos.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < repeticiones; i++) {
+            pedido.run();
+        }
+        return (hilos.getCurrentThreadAllocatedBytes() - memoriaInicial) / repeticiones;
+    }
+
+    private void serializar(Object valor) {
+        try {
+            objectMapper.writeValueAsBytes(valor);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
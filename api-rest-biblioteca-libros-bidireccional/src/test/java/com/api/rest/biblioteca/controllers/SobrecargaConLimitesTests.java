@@ -0,0 +1,31 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+
+//la sobrecarga de SobrecargaConcurrente con los limites de concurrencia de application.properties
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:sobrecarga_limites_db;MODE=MySQL;DB_CLOSE_DELAY=-1")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SobrecargaConLimitesTests extends SobrecargaConcurrente {
+
+    @Override
+    protected String modo() {
+        return "Con limites";
+    }
+
+    @Override
+    protected void verificar(Resultado sola, Resultado conSobrecarga) {
+        //lo que sobra se rechaza en los grupos costosos, no en las consultas por id
+        assertThat(conSobrecarga.costosasRechazadas).hasPositiveValue();
+        assertThat(conSobrecarga.consultasRechazadas).hasValue(0);
+        //sin limites, con un solo procesador, el p99 de las consultas por id pasa de decenas de ms a unos 4 s; con
+        //limites queda en unos 300 ms (de 4 a 5 veces el de las consultas solas). 500 ms es el piso para el ruido de
+        //las consultas solas, que tardan pocas decenas de ms
+        assertThat(conSobrecarga.percentil(99)).isLessThan(Math.max(5 * sola.percentil(99), 500));
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.api.rest.biblioteca.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+/*
+ Prueba de sobrecarga contra la aplicacion levantada en un puerto real. Unos pocos clientes hacen consultas
+ por id (GET /api/libros/{id}) sin pausa: primero solos y despues junto con sobrecarga.clientes clientes que
+ piden paginas de 200 bibliotecas con todos sus libros (GET /api/biblioteca?size=200) o crean libros (POST
+ /api/libros). Cada fase dura carga.segundos segundos. Informa el p99 de las consultas por id en las dos
+ fases y cuantas solicitudes costosas se atendieron o se rechazaron con 503; los clientes rechazados esperan
+ lo que indica Retry-After antes de volver a intentar, como un cliente que respeta el encabezado.
+
+ Las subclases la ejecutan con y sin los limites de concurrencia (LimitesConfig), para comparar. Tarda, por
+ eso solo se ejecuta con -Dbenchmark=true.
+ */
+abstract class SobrecargaConcurrente {
+
+    private static final int BIBLIOTECAS = 20;
+
+    private static final int LIBROS_POR_BIBLIOTECA = 200;
+
+    private static final int CLIENTES_CONSULTAS = 4;
+
+    @LocalServerPort
+    private int puerto;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final AtomicLong nuevos = new AtomicLong();
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        //ids negativos para no chocar con los que asignan las secuencias
+        jdbcTemplate.update("insert into biblioteca (id, nombre, cantidad_libros, version) select -x, concat('Biblioteca ', x), ?, 0 from system_range(1, ?)",
+                LIBROS_POR_BIBLIOTECA, BIBLIOTECAS);
+        jdbcTemplate.update("insert into libros (id, nombre, biblioteca_id, version) select -x, concat('Libro ', x), -(mod(x, ?) + 1), 0 from system_range(1, ?)",
+                BIBLIOTECAS, BIBLIOTECAS * LIBROS_POR_BIBLIOTECA);
+    }
+
+    @Test
+    void lasConsultasPorIdSiguenRespondiendoConSobrecarga() throws Exception {
+        int clientesCostosos = Integer.getInteger("sobrecarga.clientes", 200);
+        Duration duracion = Duration.ofSeconds(Integer.getInteger("carga.segundos", 10));
+
+        Resultado sola = fase(duracion, 0);
+        Resultado conSobrecarga = fase(duracion, clientesCostosos);
+
+        System.out.printf("%s: consultas por id p99 %d ms solas y %d ms con %d clientes costosos (%d 503); "
+                + "solicitudes costosas: %d atendidas, %d rechazadas con 503%n",
+                modo(), sola.percentil(99), conSobrecarga.percentil(99), clientesCostosos, conSobrecarga.consultasRechazadas.get(),
+                conSobrecarga.costosasAtendidas.get(), conSobrecarga.costosasRechazadas.get());
+
+        assertThat(conSobrecarga.latencias).isNotEmpty();
+        verificar(sola, conSobrecarga);
+    }
+
+    //nombre del modo, para el informe
+    protected abstract String modo();
+
+    protected void verificar(Resultado sola, Resultado conSobrecarga) {
+    }
+
+    private Resultado fase(Duration duracion, int clientesCostosos) throws InterruptedException {
+        Resultado resultado = new Resultado();
+        ExecutorService clientes = Executors.newFixedThreadPool(CLIENTES_CONSULTAS + clientesCostosos);
+        long fin = System.nanoTime() + duracion.toNanos();
+
+        for (int i = 0; i < CLIENTES_CONSULTAS; i++) {
+            clientes.submit(() -> {
+                while (System.nanoTime() < fin) {
+                    long inicio = System.nanoTime();
+                    int estado = enviar(HttpRequest.newBuilder(url("/api/libros/-" + (1 + ThreadLocalRandom.current()
+                            .nextInt(BIBLIOTECAS * LIBROS_POR_BIBLIOTECA)))).build());
+                    resultado.latencias.add(System.nanoTime() - inicio);
+                    if (estado == 503) {
+                        resultado.consultasRechazadas.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        for (int i = 0; i < clientesCostosos; i++) {
+            clientes.submit(() -> {
+                while (System.nanoTime() < fin) {
+                    int estado = enviar(costosa());
+                    if (estado == 503) {
+                        resultado.costosasRechazadas.incrementAndGet();
+                        Thread.sleep(1000); //Retry-After: 1
+                    } else {
+                        resultado.costosasAtendidas.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        clientes.shutdown();
+        clientes.awaitTermination(duracion.toSeconds() + 120, TimeUnit.SECONDS);
+        return resultado;
+    }
+
+    private HttpRequest costosa() {
+        if (ThreadLocalRandom.current().nextInt(4) == 0) {
+            String cuerpo = "{\"nombre\": \"Nuevo %d\", \"biblioteca\": {\"id\": -1}}".formatted(nuevos.incrementAndGet());
+            return HttpRequest.newBuilder(url("/api/libros")).header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(cuerpo)).build();
+        }
+        return HttpRequest.newBuilder(url("/api/biblioteca?size=200")).build();
+    }
+
+    private int enviar(HttpRequest solicitud) {
+        try {
+            return cliente.send(solicitud, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private URI url(String ruta) {
+        return URI.create("http://localhost:" + puerto + ruta);
+    }
+
+    static class Resultado {
+
+        final List<Long> latencias = Collections.synchronizedList(new ArrayList<>());
+
+        final AtomicLong consultasRechazadas = new AtomicLong();
+
+        final AtomicLong costosasAtendidas = new AtomicLong();
+
+        final AtomicLong costosasRechazadas = new AtomicLong();
+
+        //en milisegundos
+        long percentil(int percentil) {
+            List<Long> ordenadas = new ArrayList<>(latencias);
+            Collections.sort(ordenadas);
+            return ordenadas.get((ordenadas.size() - 1) * percentil / 100) / 1_000_000;
+        }
+
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.api.rest.biblioteca.controllers;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+
+//la sobrecarga de SobrecargaConcurrente sin limites de concurrencia, para comparar
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:sobrecarga_sin_limites_db;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "biblioteca.limites.habilitados=false"})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SobrecargaSinLimitesTests extends SobrecargaConcurrente {
+
+    @Override
+    protected String modo() {
+        return "Sin limites";
+    }
+
+}
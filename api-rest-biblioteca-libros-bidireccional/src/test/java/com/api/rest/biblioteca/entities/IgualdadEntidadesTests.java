@@ -0,0 +1,201 @@
+package com.api.rest.biblioteca.entities;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest
+class IgualdadEntidadesTests {
+
+    private static final int LIBROS = 5_000;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long bibliotecaId;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        Set<Libro> libros = new HashSet<>();
+        for (int i = 0; i < LIBROS; i++) {
+            Libro libro = new Libro();
+            libro.setNombre("Libro " + i);
+            libros.add(libro);
+        }
+        biblioteca.setLibros(libros);
+        bibliotecaId = bibliotecaRepository.save(biblioteca).getId();
+    }
+
+    @Test
+    void armarElConjuntoNoInicializaLasBibliotecas() {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            List<Libro> libros = libroRepository.findAll(); //cada libro referencia un proxy sin inicializar de la biblioteca
+            estadisticas.clear();
+
+            Set<Libro> conjunto = new HashSet<>(libros);
+            for (Libro libro : libros) {
+                assertThat(conjunto.contains(libro)).isTrue();
+            }
+
+            assertThat(conjunto).hasSize(LIBROS);
+            assertThat(estadisticas.getPrepareStatementCount()).isZero();
+            assertThat(libros).allMatch(libro -> !Hibernate.isInitialized(libro.getBiblioteca()));
+            assertThat(libros.get(0).toString()).doesNotContain("Biblioteca");
+        });
+    }
+
+    /*
+     Con un hashCode igual para todos los libros, el HashSet guarda los 5.000 en el mismo lugar y cada contains los recorre:
+     armar el conjunto y buscarlos lleva segundos. Con el codigo cuesta lo mismo que un conjunto de sus ids, en memoria y en CPU.
+     */
+    @Test
+    void armarElConjuntoCuestaLoMismoQueUnConjuntoDeIds() {
+        transactionTemplate.executeWithoutResult(estado -> {
+            List<Libro> libros = libroRepository.findAll();
+            List<Long> ids = libros.stream().map(Libro::getId).toList();
+            medir(ids); //la primera vuelta incluye la compilacion JIT y calcula el hashCode de cada codigo
+            medir(libros);
+
+            long[] conjuntoDeIds = medir(ids);
+            long[] conjuntoDeLibros = medir(libros);
+
+            assertThat(conjuntoDeLibros[0]).isLessThanOrEqualTo(conjuntoDeIds[0] * 3 / 2);
+            assertThat(conjuntoDeLibros[1]).isLessThanOrEqualTo(conjuntoDeIds[1] * 10 + 20_000_000L);
+        });
+    }
+
+    /* Bytes asignados y nanosegundos de CPU del hilo para armar el conjunto y buscar cada elemento */
+    private static long[] medir(List<?> elementos) {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long memoriaInicial = hilos.getCurrentThreadAllocatedBytes();
+        long cpuInicial = hilos.getCurrentThreadCpuTime();
+
+        Set<Object> conjunto = new HashSet<>(elementos);
+        int encontrados = 0;
+        for (Object elemento : elementos) {
+            if (conjunto.contains(elemento)) {
+                encontrados++;
+            }
+        }
+
+        long memoria = hilos.getCurrentThreadAllocatedBytes() - memoriaInicial;
+        long cpu = hilos.getCurrentThreadCpuTime() - cpuInicial;
+        assertThat(encontrados).isEqualTo(elementos.size());
+        return new long[] {memoria, cpu};
+    }
+
+    @Test
+    void elHashCodeNoCambiaAlGuardar() {
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Sucursal");
+        Libro libro = new Libro();
+        libro.setNombre("Rayuela");
+        Set<Libro> libros = new HashSet<>();
+        libros.add(libro);
+        biblioteca.setLibros(libros);
+        int hashLibro = libro.hashCode();
+        int hashBiblioteca = biblioteca.hashCode();
+
+        bibliotecaRepository.save(biblioteca);
+
+        assertThat(libro.getId()).isNotNull();
+        assertThat(libro.hashCode()).isEqualTo(hashLibro);
+        assertThat(biblioteca.hashCode()).isEqualTo(hashBiblioteca);
+        assertThat(libros).contains(libro);
+        assertThat(libroRepository.findById(libro.getId()).orElseThrow()).isEqualTo(libro);
+    }
+
+    @Test
+    void cargarLaColeccionEsUnaSolaConsulta() {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            Biblioteca biblioteca = bibliotecaRepository.findById(bibliotecaId).orElseThrow();
+            estadisticas.clear();
+
+            assertThat(biblioteca.getLibros()).hasSize(LIBROS);
+            assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void dosLibrosConElMismoNombreSeConservan() {
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Sucursal");
+        Libro primero = new Libro();
+        primero.setNombre("Rayuela");
+        Libro segundo = new Libro();
+        segundo.setNombre("Rayuela");
+
+        Set<Libro> libros = new HashSet<>();
+        libros.add(primero);
+        libros.add(segundo);
+        biblioteca.setLibros(libros);
+
+        assertThat(biblioteca.getLibros()).hasSize(2);
+        assertThat(primero).isNotEqualTo(segundo);
+    }
+
+    @Test
+    void unLibroRenombradoSigueEnLaColeccion() {
+        transactionTemplate.executeWithoutResult(estado -> {
+            Biblioteca biblioteca = bibliotecaRepository.findById(bibliotecaId).orElseThrow();
+            Libro libro = biblioteca.getLibros().iterator().next();
+
+            libro.setNombre("Renombrado");
+
+            assertThat(biblioteca.getLibros()).contains(libro);
+            assertThat(biblioteca.getLibros().remove(libro)).isTrue();
+            assertThat(biblioteca.getLibros()).hasSize(LIBROS - 1);
+            estado.setRollbackOnly();
+        });
+    }
+
+    @Test
+    void unProxyEsIgualALaEntidadQueRepresenta() {
+        Biblioteca otra = bibliotecaRepository.findById(bibliotecaId).orElseThrow(); //leida en otra transaccion
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            Biblioteca proxy = bibliotecaRepository.getReferenceById(bibliotecaId);
+
+            //comparar contra el proxy lee su codigo, y con el la entidad real
+            assertThat(otra).isEqualTo(proxy);
+            assertThat(proxy).isEqualTo(otra);
+            assertThat(proxy.hashCode()).isEqualTo(otra.hashCode());
+        });
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.api.rest.biblioteca.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.OutputStream;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.api.rest.biblioteca.entities.Biblioteca;
+import com.api.rest.biblioteca.repositories.BibliotecaRepository;
+import com.api.rest.biblioteca.repositories.LibroRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ExportacionTests {
+
+    private static final int LIBROS = 50_000;
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private BibliotecaRepository bibliotecaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry registro;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${biblioteca.exportacion.tamano-limpieza}")
+    private int tamanoLimpieza;
+
+    private Long bibliotecaId;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository.deleteAllInBatch();
+        bibliotecaRepository.deleteAllInBatch();
+
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.setNombre("Central");
+        bibliotecaId = bibliotecaRepository.save(biblioteca).getId();
+        jdbcTemplate.update("insert into libros (id, nombre, biblioteca_id) select x, concat('Libro ', x), ? from system_range(1, ?)",
+                bibliotecaId, LIBROS);
+    }
+
+    /*
+     La salida revisa, cada vez que recibe datos, cuantas entidades hay en el contexto de persistencia de la
+     exportacion (que corre en este mismo hilo). Si el contexto no se vaciara, llegaria a LIBROS entidades.
+     */
+    @Test
+    void elContextoDePersistenciaNoCreceConLaCantidadDeLibros() {
+        SalidaQueMide salida = new SalidaQueMide();
+        exportacionService.exportar(null, ExportacionService.Formato.NDJSON, salida);
+
+        assertThat(salida.lineas).isEqualTo(LIBROS);
+        assertThat(salida.maximoEntidades).isLessThanOrEqualTo(tamanoLimpieza);
+    }
+
+    @Test
+    void exportaNdjsonPorHttp() throws Exception {
+        MvcResult resultado = mockMvc.perform(get("/api/biblioteca/" + bibliotecaId + "/libros/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        //el controlador ya termino, pero la exportacion sigue ocupando su lugar (LimiteConcurrenciaFilter)
+        assertThat(exportacionesEnCurso()).isEqualTo(1);
+
+        String cuerpo = mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(exportacionesEnCurso()).isZero();
+        assertThat(cuerpo.lines().count()).isEqualTo(LIBROS);
+        assertThat(cuerpo.lines().findFirst()).hasValue("{\"id\":1,\"nombre\":\"Libro 1\",\"bibliotecaId\":" + bibliotecaId + "}");
+    }
+
+    @Test
+    void exportaCsvPorHttp() throws Exception {
+        jdbcTemplate.update("update libros set nombre = 'Uno, dos y \"tres\"' where id = 1");
+
+        MvcResult resultado = mockMvc.perform(get("/api/libros/export?formato=csv")).andReturn();
+
+        String cuerpo = mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(cuerpo.lines().count()).isEqualTo(LIBROS + 1);
+        assertThat(cuerpo.lines().limit(2)).containsExactly("id,nombre,biblioteca_id",
+                "1,\"Uno, dos y \"\"tres\"\"\"," + bibliotecaId);
+    }
+
+    @Test
+    void rechazaFormatosYBibliotecasDesconocidos() throws Exception {
+        mockMvc.perform(get("/api/libros/export?formato=xml")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/biblioteca/999999/libros/export")).andExpect(status().isUnprocessableEntity());
+    }
+
+    private double exportacionesEnCurso() {
+        return registro.get("biblioteca.concurrencia.activas").tag("grupo", "exportaciones").gauge().value();
+    }
+
+    private class SalidaQueMide extends OutputStream {
+
+        private long lineas;
+        private int maximoEntidades;
+
+        @Override
+        public void write(int b) {
+            contar(b);
+            medir();
+        }
+
+        @Override
+        public void write(byte[] b, int desde, int cantidad) {
+            for (int i = desde; i < desde + cantidad; i++) {
+                contar(b[i]);
+            }
+            medir();
+        }
+
+        private void contar(int b) {
+            if (b == '\n') {
+                lineas++;
+            }
+        }
+
+        private void medir() {
+            int entidades = entityManager.unwrap(Session.class).getStatistics().getEntityCount();
+            maximoEntidades = Math.max(maximoEntidades, entidades);
+        }
+    }
+
+}
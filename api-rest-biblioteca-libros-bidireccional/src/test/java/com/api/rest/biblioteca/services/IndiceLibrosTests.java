@@ -0,0 +1,107 @@
+package com.api.rest.biblioteca.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.api.rest.biblioteca.dto.LibroResumen;
+import com.api.rest.biblioteca.dto.ResultadoBusqueda;
+
+class IndiceLibrosTests {
+
+    private IndiceLibros indice;
+
+    @BeforeEach
+    void preparar() {
+        indice = new IndiceLibros();
+        indice.guardar(new LibroResumen(1L, "Cien años de soledad", 1L));
+        indice.guardar(new LibroResumen(2L, "El amor en los tiempos del cólera", 1L));
+        indice.guardar(new LibroResumen(3L, "Crónica de una muerte anunciada", 1L));
+        indice.guardar(new LibroResumen(4L, "Soledad", 2L));
+        indice.guardar(new LibroResumen(5L, "El laberinto de la soledad", 2L));
+    }
+
+    @Test
+    void separaEnPalabrasSinAcentosNiMayusculas() {
+        assertThat(IndiceLibros.terminos("Cien Años de  Soledad (1967)")).containsExactly("cien", "anos", "de", "soledad", "1967");
+    }
+
+    @Test
+    void ordenaPorRelevancia() {
+        //"cien" aparece en un solo libro y pesa mas que "soledad", que aparece en tres
+        assertThat(ids(indice.buscar("soledad cien ", 10))).containsExactly(1L, 4L, 5L);
+        //a igual puntaje, primero el nombre mas corto
+        assertThat(ids(indice.buscar("soledad ", 10))).containsExactly(4L, 1L, 5L);
+    }
+
+    @Test
+    void completaLaUltimaPalabra() {
+        assertThat(ids(indice.buscar("cronica de una mue", 10))).startsWith(3L);
+        assertThat(ids(indice.buscar("colera", 10))).containsExactly(2L);
+        //con un espacio al final la palabra esta completa y no se completa
+        assertThat(indice.buscar("sol ", 10)).isEmpty();
+        assertThat(ids(indice.buscar("sol", 10))).containsExactlyInAnyOrder(1L, 4L, 5L);
+    }
+
+    @Test
+    void sugierePrimeroLasPalabrasMasFrecuentes() {
+        indice.guardar(new LibroResumen(6L, "Solaris", 2L));
+
+        assertThat(indice.sugerir("so", 10)).containsExactly("soledad", "solaris");
+        assertThat(indice.sugerir("el amor en los ti", 10)).containsExactly("tiempos");
+    }
+
+    @Test
+    void seActualizaAlModificarYEliminar() {
+        indice.guardar(new LibroResumen(4L, "Pedro Páramo", 2L));
+        indice.eliminar(5L);
+
+        assertThat(ids(indice.buscar("soledad ", 10))).containsExactly(1L);
+        assertThat(indice.buscar("pedro ", 10)).extracting(ResultadoBusqueda::nombre).containsExactly("Pedro Páramo");
+        assertThat(indice.sugerir("lab", 10)).isEmpty();
+        assertThat(indice.getCantidadLibros()).isEqualTo(4);
+    }
+
+    @Test
+    void reconstruirAplicaElUltimoCambioDeCadaLibro() {
+        //mientras se leen los libros de la base se guarda y se elimina uno que la lectura alcanzo a ver,
+        //se elimina uno y se vuelve a guardar con otro nombre, y se modifica otro despues de leerlo
+        Stream<LibroResumen> base = Stream.of(
+                new LibroResumen(1L, "Cien años de soledad", 1L),
+                new LibroResumen(4L, "Soledad", 2L),
+                new LibroResumen(6L, "Rayuela", 1L)).peek(libro -> {
+                    if (libro.id() == 1L) {
+                        indice.guardar(new LibroResumen(6L, "Rayuela", 1L));
+                        indice.eliminar(6L);
+                        indice.eliminar(4L);
+                        indice.guardar(new LibroResumen(4L, "Pedro Páramo", 2L));
+                    }
+                    if (libro.id() == 6L) {
+                        indice.guardar(new LibroResumen(1L, "Ficciones", 1L));
+                    }
+                });
+
+        indice.reconstruir(base);
+
+        assertThat(indice.buscar("rayuela ", 10)).isEmpty();
+        assertThat(indice.buscar("soledad ", 10)).isEmpty();
+        assertThat(ids(indice.buscar("pedro ", 10))).containsExactly(4L);
+        assertThat(ids(indice.buscar("ficciones ", 10))).containsExactly(1L);
+        assertThat(indice.getCantidadLibros()).isEqualTo(2);
+    }
+
+    @Test
+    void devuelveComoMaximoLaCantidadPedida() {
+        assertThat(indice.buscar("de", 2)).hasSize(2);
+        assertThat(indice.buscar("  ", 10)).isEmpty();
+    }
+
+    private static List<Long> ids(List<ResultadoBusqueda> resultados) {
+        return resultados.stream().map(ResultadoBusqueda::id).toList();
+    }
+
+}
@@ -0,0 +1,24 @@
+-- Esquema inicial para H2 (tests del perfil "produccion"): el mismo que db/migration/mysql, con una secuencia
+-- en lugar de la tabla libros_seq
+
+create table biblioteca (
+    id bigint generated by default as identity,
+    nombre varchar(255) not null,
+    cantidad_libros bigint,
+    version bigint default 0 not null,
+    primary key (id)
+);
+
+create index idx_biblioteca_cantidad_libros on biblioteca (cantidad_libros);
+
+create table libros (
+    id bigint not null,
+    nombre varchar(255) not null,
+    biblioteca_id bigint not null,
+    version bigint default 0 not null,
+    primary key (id),
+    constraint uk_libros_nombre unique (nombre),
+    constraint fk_libros_biblioteca foreign key (biblioteca_id) references biblioteca (id)
+);
+
+create sequence libros_seq start with 1 increment by 50;
@@ -0,0 +1,6 @@
+-- Clave de negocio de bibliotecas y libros, para equals y hashCode (Biblioteca.codigo, Libro.codigo). Las filas
+-- existentes, y las que se inserten sin Hibernate, reciben un UUID de la base
+
+alter table biblioteca add column codigo varchar(36) default (uuid()) not null;
+
+alter table libros add column codigo varchar(36) default (uuid()) not null;